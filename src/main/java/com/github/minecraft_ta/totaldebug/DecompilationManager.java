@@ -1,55 +1,301 @@
 package com.github.minecraft_ta.totaldebug;
 
 import com.github.minecraft_ta.totaldebug.companionApp.messages.OpenFileMessage;
+import com.github.minecraft_ta.totaldebug.config.TotalDebugClientConfig;
 import com.github.minecraft_ta.totaldebug.gui.codeviewer.CodeViewScreen;
 import com.github.minecraft_ta.totaldebug.companionApp.CompanionApp;
 import com.github.minecraft_ta.totaldebug.util.ProcyonDecompiler;
-import com.google.common.base.Charsets;
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassDependencyCollector;
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassOutlineWriter;
+import com.github.minecraft_ta.totaldebug.util.decompiler.*;
+import com.github.minecraft_ta.totaldebug.util.mappings.ClassUtil;
+import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
 import net.minecraft.client.Minecraft;
 import net.minecraft.util.text.Style;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextComponentTranslation;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraftforge.fml.client.FMLClientHandler;
+import org.apache.commons.lang3.tuple.Pair;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class DecompilationManager {
 
     public static final String DECOMPILED_FILES_FOLDER = "decompiled-files";
 
+    private static final String TEMP_FOLDER = "tmp";
+    private static final String CACHE_MANIFEST_FILE = "cache-manifest.bin";
+    private static final String SOURCE_INDEX_FILE = "source-index.bin";
+    private static final int PREFETCH_QUEUE_SIZE = 16;
+
+    private static final LongAdder CACHE_HITS = Metrics.counter("decompilation.cache_hits");
+    private static final LongAdder COALESCED = Metrics.counter("decompilation.coalesced");
+    private static final LongAdder FAILURES = Metrics.counter("decompilation.failures");
+    private static final LongAdder PREFETCHED_DEPENDENCIES = Metrics.counter("decompilation.prefetched_dependencies");
+    private static final LongAdder OPENED_IN_COMPANION_APP = Metrics.counter("companion_app.open_file");
+    private static final Histogram DECOMPILATION_TIME = Metrics.histogram("decompilation.total");
+    private static final Histogram SOURCE_SEARCH_TIME = Metrics.histogram("search.sources");
+
     private Path dataDir;
     private Path decompilationDir;
+    private Path tempDir;
 
-    public CompletableFuture<String> getDecompiledFileContent(Class<?> clazz) {
-        return CompletableFuture.supplyAsync(() -> {
-            Path decompiledFilePath = this.decompilationDir.resolve(clazz.getName() + ".java");
+    private DecompilationExecutor executor;
+    private DecompilationWatchdog watchdog;
+    private CacheManifest cacheManifest;
+    private DecompilationStore store;
+    private SourceIndex sourceIndex;
 
-            if (!decompileClassIfNotExists(clazz))
-                return "";
+    /**
+     * names of all classes that were queued for prefetching
+     */
+    private final Set<String> prefetchedClasses = ConcurrentHashMap.newKeySet();
+    /**
+     * class name -> result of the currently running decompilation of that class
+     */
+    private final Map<String, CompletableFuture<Boolean>> inFlightDecompilations = new ConcurrentHashMap<>();
+    /**
+     * names of all cache entries whose decompilation failed or was cancelled
+     */
+    private final Set<String> failedDecompilations = ConcurrentHashMap.newKeySet();
+    /**
+     * class name -> hash of the bytecode of the class and its nested classes; loaded classes can't change, so they
+     * only have to be hashed once per session
+     */
+    private final Map<String, String> classHashes = new ConcurrentHashMap<>();
 
-            try {
-                return new String(Files.readAllBytes(decompiledFilePath), Charsets.UTF_8);
-            } catch (IOException e) {
-                TotalDebug.LOGGER.error("Error while reading decompiled file!", e);
-                return "";
+    public CompletableFuture<String> getDecompiledFileContent(Class<?> clazz, DecompilationExecutor.Priority priority) {
+        return decompileClassAsync(clazz, priority).thenApplyAsync(success ->
+                success ? readDecompiledFile(ClassUtil.getTopLevelClass(clazz).getName()) : "", this.executor.asExecutor(priority));
+    }
+
+    /**
+     * Queues the given class for decompilation in the background. Every class is only queued once, and it's skipped if
+     * the heap is already close to the limit of the watchdog once it's its turn.
+     *
+     * @return {@code true} if the class was queued
+     */
+    public boolean prefetch(Class<?> clazz) {
+        clazz = ClassUtil.getTopLevelClass(clazz);
+        Class<?> finalClazz = clazz;
+        //allow the class to be queued again later if the queue is full
+        if (this.executor.getQueueDepth(DecompilationExecutor.Priority.PREFETCH) >= PREFETCH_QUEUE_SIZE ||
+            !this.prefetchedClasses.add(clazz.getName()))
+            return false;
+
+        this.executor.run(DecompilationExecutor.Priority.PREFETCH, () -> {
+                    if (!this.watchdog.hasHeapHeadroom()) {
+                        this.prefetchedClasses.remove(finalClazz.getName());
+                        return;
+                    }
+
+                    //a running decompilation of the same class doesn't have to be waited for
+                    decompileClassIfNotExists(finalClazz);
+                })
+                .exceptionally(throwable -> {
+                    TotalDebug.LOGGER.error("Unable to prefetch class " + finalClazz.getName(), throwable);
+                    return null;
+                });
+        return true;
+    }
+
+    /**
+     * Queues the classes the given class references for decompilation in the background, so navigating to them from
+     * the opened class doesn't have to wait. Super types come first, followed by field types and the owners of
+     * invoked methods. At most {@link TotalDebugClientConfig#prefetchDependencies} classes are queued.
+     */
+    private void prefetchDependencies(Class<?> clazz) {
+        int limit = TotalDebug.PROXY.getClientConfig().prefetchDependencies;
+        if (limit <= 0 || !this.watchdog.hasHeapHeadroom())
+            return;
+
+        this.executor.run(DecompilationExecutor.Priority.PREFETCH, () -> {
+            int queued = 0;
+            for (String className : ClassDependencyCollector.getDependencies(clazz)) {
+                if (queued >= limit || !this.watchdog.hasHeapHeadroom())
+                    break;
+
+                //loading the referenced classes here would define classes the game might never use
+                Class<?> dependency = ClassUtil.getLoadedClass(className);
+                if (dependency == null)
+                    continue;
+
+                dependency = ClassUtil.getTopLevelClass(dependency);
+                if (dependency == clazz || isCached(dependency.getName(), null) || !prefetch(dependency))
+                    continue;
+
+                queued++;
+                PREFETCHED_DEPENDENCIES.increment();
             }
+        }).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Unable to prefetch dependencies of class " + clazz.getName(), throwable);
+            return null;
         });
     }
 
-    public boolean decompileClassIfNotExists(Class<?> clazz) {
-        String name = clazz.getName();
+    /**
+     * Decompiles the given class on the executor if it's not decompiled yet.
+     *
+     * @return a future which completes with {@code true} if the decompiled file of the top level class exists
+     * @see #decompileClassIfNotExists(Class)
+     */
+    public CompletableFuture<Boolean> decompileClassAsync(Class<?> clazz, DecompilationExecutor.Priority priority) {
+        return this.executor.supply(priority, () -> decompileClassIfNotExists(clazz)).thenCompose(Function.identity());
+    }
 
-        Path output = this.decompilationDir.resolve(name + ".java");
-        if (Files.exists(output))
-            return true;
+    /**
+     * Decompiles the given class on the current thread if it's not decompiled yet. Concurrent calls for the same class
+     * share a single decompilation. Nested, anonymous and lambda classes are decompiled as part of their top level
+     * class.
+     *
+     * @return a future which completes with {@code true} if the decompiled file of the top level class exists. If
+     * another thread is already decompiling the class, its future is returned instead of blocking this thread, so
+     * callers should compose on it.
+     */
+    public CompletableFuture<Boolean> decompileClassIfNotExists(Class<?> clazz) {
+        clazz = ClassUtil.getTopLevelClass(clazz);
+        Class<?> finalClazz = clazz;
+        return decompileIfNotExists(clazz, clazz.getName(), () -> ProcyonDecompiler.decompile(finalClazz.getName()));
+    }
+
+    /**
+     * Decompiles only the given method and the header of its class on the current thread, if it's not decompiled yet.
+     * The result is cached separately from the full class.
+     *
+     * @param methodName the name of the method; all overloads are included
+     * @return a future which completes with {@code true} if the decompiled file exists
+     * @see #decompileClassIfNotExists(Class)
+     */
+    public CompletableFuture<Boolean> decompileMethodIfNotExists(Class<?> clazz, String methodName) {
+        return decompileIfNotExists(clazz, getMethodEntryName(clazz, methodName),
+                () -> ProcyonDecompiler.decompileMethods(clazz.getName(), Collections.singleton(methodName)));
+    }
+
+    /**
+     * @param name the name of the cache entry
+     */
+    private CompletableFuture<Boolean> decompileIfNotExists(Class<?> clazz, String name, Supplier<DecompilationResult> decompiler) {
+        CacheManifest.Key key = getCacheKey(clazz);
+        if (isCached(name, key)) {
+            CACHE_HITS.increment();
+            return CompletableFuture.completedFuture(true);
+        }
+        //don't run into the same timeout or crash again
+        if (this.failedDecompilations.contains(name))
+            return CompletableFuture.completedFuture(false);
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture<Boolean> inFlightFuture = this.inFlightDecompilations.putIfAbsent(name, future);
+        if (inFlightFuture != null) {
+            //waiting here would keep this thread from working on other requests
+            COALESCED.increment();
+            return inFlightFuture;
+        }
 
         try {
-            Files.write(output, ProcyonDecompiler.decompile(name).getBytes(StandardCharsets.UTF_8));
+            //the previous decompilation might have finished between the check and registering the future
+            boolean result = isCached(name, key) || decompile(name, key, decompiler, future);
+            future.complete(result);
+            return future;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            this.inFlightDecompilations.remove(name, future);
+        }
+    }
+
+    /**
+     * @return the current inputs of the given class; {@code null} if its bytecode is not available
+     */
+    @Nullable
+    private CacheManifest.Key getCacheKey(Class<?> clazz) {
+        String hash = this.classHashes.get(clazz.getName());
+        if (hash == null) {
+            byte[] bytecode = ClassUtil.getBytecodeWithNestedClasses(clazz);
+            if (bytecode == null)
+                return null;
+
+            hash = CacheManifest.Key.hash(bytecode);
+            this.classHashes.put(clazz.getName(), hash);
+        }
+
+        //the mappings can be reloaded, so they're not part of the memoized hash
+        return new CacheManifest.Key(hash, RemappingUtil.getMappingsVersion(), ProcyonDecompiler.SETTINGS_VERSION);
+    }
+
+    /**
+     * @param key the current inputs of the class; {@code null} if they're unknown, in which case any existing file is
+     *            considered up to date
+     */
+    private boolean isCached(String name, @Nullable CacheManifest.Key key) {
+        return this.store.contains(name + ".java") && (key == null || this.cacheManifest.isUpToDate(name, key));
+    }
+
+    /**
+     * @param future the future other threads wait on for this decompilation; completed early if the decompilation is
+     *               abandoned by the watchdog
+     */
+    private boolean decompile(String name, @Nullable CacheManifest.Key key, Supplier<DecompilationResult> decompiler,
+                              CompletableFuture<Boolean> future) {
+        long startTime = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        DecompilationResult result;
+        try (DecompilationWatchdog.Job ignored = this.watchdog.start(name, DecompilationExecutor.getCurrentPriority(), cancellation -> {
+            if (!cancellation.isRetryable())
+                this.failedDecompilations.add(name);
+            future.complete(false);
+            this.executor.abandon(thread, new TimeoutException("Decompilation of " + name + " was abandoned"));
+        })) {
+            result = decompiler.get();
+        } catch (DecompilationWatchdog.CancellationException e) {
+            FAILURES.increment();
+            if (e.isRetryable()) {
+                TotalDebug.LOGGER.warn(e.getMessage());
+                return false;
+            }
+
+            TotalDebug.LOGGER.warn("{}, it will not be retried until the next restart", e.getMessage());
+            this.failedDecompilations.add(name);
+            return false;
+        } catch (RuntimeException | StackOverflowError e) {
+            TotalDebug.LOGGER.error("Unable to decompile " + name + ", it will not be retried until the next restart", e);
+            this.failedDecompilations.add(name);
+            FAILURES.increment();
+            return false;
+        }
+
+        try {
+            this.store.write(name + LineNumberMapping.FILE_EXTENSION, result.getLineNumberMapping().toByteArray());
+            this.store.write(name + NavigationMap.FILE_EXTENSION, result.getNavigationMap().toByteArray());
+            //written last, the existence of the java file marks the decompilation as complete
+            this.store.write(name + ".java", result.getSource().getBytes(StandardCharsets.UTF_8));
+            if (key != null)
+                this.cacheManifest.put(name, key);
+            if (SourceIndex.isIndexed(name + ".java"))
+                this.sourceIndex.update(name + ".java", result.getSource());
+
+            DECOMPILATION_TIME.recordSince(startTime);
             return true;
         } catch (IOException e) {
             TotalDebug.LOGGER.error("Unable to delete or write java file " + name, e);
@@ -57,12 +303,101 @@ public class DecompilationManager {
         }
     }
 
+    /**
+     * @param originalLine a line from the line number table of the given class
+     * @return the line in the decompiled file of the top level class of the given class; {@code 1} if the line could
+     * not be determined
+     */
+    public int getDecompiledLine(Class<?> clazz, int originalLine) {
+        //nested classes share the source file and therefore the line numbers of their top level class
+        String name = ClassUtil.getTopLevelClass(clazz).getName();
+        LineNumberMapping mapping = LineNumberMapping.read(this.store.read(name + LineNumberMapping.FILE_EXTENSION));
+        if (mapping == null)
+            return 1;
+
+        return Math.max(1, mapping.getDecompiledLine(originalLine));
+    }
+
+    /**
+     * @param name the name of a decompiled file without its extension
+     * @return the navigation map of the given file; {@code null} if the file was decompiled before navigation maps
+     * existed, or is not decompiled at all
+     */
+    @Nullable
+    public NavigationMap getNavigationMap(String name) {
+        return NavigationMap.read(this.store.read(name + NavigationMap.FILE_EXTENSION));
+    }
+
     public void setup() {
         this.dataDir = FMLClientHandler.instance().getSavesDirectory().toPath().getParent().resolve("code-viewer");
         this.decompilationDir = this.dataDir.resolve(DECOMPILED_FILES_FOLDER);
 
+        this.tempDir = this.dataDir.resolve(TEMP_FOLDER);
+
         createDirectory(this.dataDir);
         createDirectory(this.decompilationDir);
+        deleteDirectory(this.tempDir);
+        createDirectory(this.tempDir);
+
+        this.cacheManifest = new CacheManifest(this.dataDir.resolve(CACHE_MANIFEST_FILE));
+        this.cacheManifest.load();
+
+        TotalDebugClientConfig config = TotalDebug.PROXY.getClientConfig();
+        this.executor = new DecompilationExecutor(config.decompilationThreads);
+        this.watchdog = new DecompilationWatchdog(config.decompilationTimeout, config.decompilationHeapLimit);
+
+        DirectoryStore directoryStore = new DirectoryStore(this.decompilationDir, this.tempDir);
+        this.store = directoryStore;
+        if (config.usePackStore) {
+            PackStore packStore = new PackStore(this.dataDir, directoryStore, this.executor.asExecutor(DecompilationExecutor.Priority.BULK));
+            try {
+                packStore.load();
+                this.store = packStore;
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to open decompiled files pack, falling back to plain files", e);
+            }
+        }
+
+        this.sourceIndex = new SourceIndex(this.dataDir.resolve(SOURCE_INDEX_FILE));
+        if (!this.sourceIndex.load()) {
+            //index the files which were decompiled before the index existed
+            this.executor.run(DecompilationExecutor.Priority.BULK, () -> {
+                try {
+                    this.sourceIndex.rebuild(this.store);
+                } catch (IOException e) {
+                    TotalDebug.LOGGER.error("Unable to rebuild decompiled source index", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Searches all decompiled sources for lines containing the given text, ignoring case.
+     *
+     * @param limit the maximum amount of hits
+     */
+    public CompletableFuture<List<SourceIndex.Hit>> searchSources(String query, int limit, DecompilationExecutor.Priority priority) {
+        return this.executor.supply(priority, () -> {
+            long startTime = System.nanoTime();
+            List<SourceIndex.Hit> hits = this.sourceIndex.search(this.store, query, limit);
+            SOURCE_SEARCH_TIME.recordSince(startTime);
+            return hits;
+        });
+    }
+
+    /**
+     * Opens an already decompiled file, e.g. from a source search result.
+     *
+     * @param name the name of the file without its extension
+     * @param line the line to open the file at, starting at 1
+     */
+    public void openDecompiledFile(String name, int line, DecompilationExecutor.Priority priority) {
+        this.executor.run(priority, () -> showFile(name, this.store.contains(name + ".java"), line, new CodeViewScreen(), new AtomicBoolean()))
+                .exceptionally(throwable -> {
+                    TotalDebug.LOGGER.error("Unable to open decompiled file {}", name);
+                    throwable.printStackTrace();
+                    return null;
+                });
     }
 
     public void openGui(Class<?> clazz) {
@@ -70,43 +405,287 @@ public class DecompilationManager {
     }
 
     public void openGui(Class<?> clazz, int line) {
-        CompletableFuture.runAsync(() -> {
-            Path filePath = this.decompilationDir.resolve(clazz.getName() + ".java");
-            decompileClassIfNotExists(clazz);
-
-            //open in companion app
-            if (TotalDebug.PROXY.getClientConfig().useCompanionApp) {
-                CompanionApp companionApp = TotalDebug.PROXY.getCompanionApp();
-                companionApp.startAndConnect();
-
-                if (companionApp.isConnected()) {
-                    Minecraft.getMinecraft().player.sendMessage(
-                            new TextComponentTranslation("companion_app.open_file",
-                                    new TextComponentString(filePath.getFileName().toString())
-                                            .setStyle(new Style().setColor(TextFormatting.WHITE))
-                            ).setStyle(new Style().setColor(TextFormatting.GRAY))
-                    );
-                    companionApp.getCompanionAppClient().getMessageProcessor().enqueueMessage(new OpenFileMessage(filePath, line));
-                }
-            } else { //open in default gui
-                getDecompiledFileContent(clazz).exceptionally(throwable -> {
+        openGui(clazz, line, DecompilationExecutor.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Opens the given class at the decompiled line which corresponds to the given line from its line number table.
+     */
+    public void openGuiAtOriginalLine(Class<?> clazz, int originalLine, DecompilationExecutor.Priority priority) {
+        decompileClassAsync(clazz, priority)
+                .thenApplyAsync(success -> success ? getDecompiledLine(clazz, originalLine) : 1, this.executor.asExecutor(priority))
+                .thenAccept(line -> openGui(clazz, line, priority));
+    }
+
+    /**
+     * Opens the given method. If the class is already decompiled, the full class is opened at the method, otherwise
+     * only the method is decompiled.
+     */
+    public void openMethodGui(Class<?> clazz, String methodName, DecompilationExecutor.Priority priority) {
+        this.executor.supply(priority, () -> {
+            String topLevelName = ClassUtil.getTopLevelClass(clazz).getName();
+            String name = this.store.contains(topLevelName + ".java") ? topLevelName : getMethodEntryName(clazz, methodName);
+            CompletableFuture<Boolean> decompilation = name.equals(topLevelName) ?
+                    decompileClassIfNotExists(clazz) :
+                    decompileMethodIfNotExists(clazz, methodName);
+
+            return decompilation.thenApply(success -> Pair.of(name, success));
+        }).thenCompose(Function.identity()).thenAcceptAsync(pair -> {
+                    String name = pair.getLeft();
+                    int line = pair.getRight() ? findMethodLine(readDecompiledFile(name), clazz, methodName) : 1;
+                    showFile(name, pair.getRight(), line, new CodeViewScreen(), new AtomicBoolean());
+                }, this.executor.asExecutor(priority))
+                .exceptionally(throwable -> {
+                    TotalDebug.LOGGER.error("Unable to decompile method {}#{}", clazz.getName(), methodName);
                     throwable.printStackTrace();
-                    return "";
-                }).thenAccept(code -> {
-                    Minecraft.getMinecraft().addScheduledTask(() -> {
-                        CodeViewScreen screen = new CodeViewScreen();
-                        FMLClientHandler.instance().showGuiScreen(screen);
-                        screen.setJavaCode(code);
-                    });
+                    return null;
                 });
+    }
+
+    /**
+     * Same as {@link #openGui(Class, int, DecompilationExecutor.Priority)}, but the class is looked up on the executor
+     * instead of the calling thread, e.g. for requests of the companion app which only contain the class name
+     */
+    public void openGui(String className, int line, DecompilationExecutor.Priority priority) {
+        withClass(className, priority, clazz -> openGui(clazz, line, priority));
+    }
+
+    /**
+     * @see #openGui(String, int, DecompilationExecutor.Priority)
+     */
+    public void openGuiAtOriginalLine(String className, int originalLine, DecompilationExecutor.Priority priority) {
+        withClass(className, priority, clazz -> openGuiAtOriginalLine(clazz, originalLine, priority));
+    }
+
+    /**
+     * @see #openGui(String, int, DecompilationExecutor.Priority)
+     */
+    public void openMethodGui(String className, String methodName, DecompilationExecutor.Priority priority) {
+        withClass(className, priority, clazz -> openMethodGui(clazz, methodName, priority));
+    }
+
+    private void withClass(String className, DecompilationExecutor.Priority priority, Consumer<Class<?>> action) {
+        this.executor.run(priority, () -> {
+            Class<?> clazz = ClassUtil.loadClass(className);
+            if (clazz == null) {
+                TotalDebug.LOGGER.error("Unable to find class {}", className);
+                return;
             }
+
+            action.accept(clazz);
         }).exceptionally(throwable -> {
-            TotalDebug.LOGGER.error("Unable to decompile class {}", clazz.getName());
-            throwable.printStackTrace();
+            TotalDebug.LOGGER.error("Unable to open class " + className, throwable);
             return null;
         });
     }
 
+    /**
+     * @param line the line to open the class at, starting at 1. For nested classes {@code 1} opens the top level class
+     *             at the declaration of the nested class
+     */
+    public void openGui(Class<?> clazz, int line, DecompilationExecutor.Priority priority) {
+        Class<?> topLevelClass = ClassUtil.getTopLevelClass(clazz);
+        boolean useCompanionApp = TotalDebug.PROXY.getClientConfig().useCompanionApp;
+        CodeViewScreen screen = new CodeViewScreen();
+        AtomicBoolean sourceShown = new AtomicBoolean();
+
+        //show the outline of the class while it's being decompiled
+        if (!useCompanionApp && !this.store.contains(topLevelClass.getName() + ".java")) {
+            this.executor.supply(DecompilationExecutor.Priority.INTERACTIVE, () -> ClassOutlineWriter.getOutline(topLevelClass)).thenAccept(outline -> {
+                if (outline == null)
+                    return;
+
+                Minecraft.getMinecraft().addScheduledTask(() -> {
+                    if (sourceShown.get())
+                        return;
+
+                    FMLClientHandler.instance().showGuiScreen(screen);
+                    screen.setOutline(outline);
+                });
+            }).exceptionally(throwable -> {
+                TotalDebug.LOGGER.error("Unable to create outline of class " + clazz.getName(), throwable);
+                return null;
+            });
+        }
+
+        decompileClassAsync(topLevelClass, priority).thenApplyAsync(success -> {
+            if (!success)
+                return -1;
+
+            prefetchDependencies(topLevelClass);
+            return topLevelClass != clazz && line <= 1 ? getNestedClassLine(clazz, topLevelClass) : line;
+        }, this.executor.asExecutor(priority)).handle((decompiledLine, throwable) -> {
+                    if (throwable != null) {
+                        TotalDebug.LOGGER.error("Unable to decompile class {}", clazz.getName());
+                        throwable.printStackTrace();
+                    }
+
+                    return throwable == null ? decompiledLine : -1;
+                }).thenAcceptAsync(decompiledLine -> {
+                    if (decompiledLine != -1)
+                        showFile(topLevelClass.getName(), true, decompiledLine, screen, sourceShown);
+                    else
+                        showFallbackOutline(topLevelClass, screen, sourceShown);
+                }, this.executor.asExecutor(priority)).exceptionally(throwable -> {
+                    TotalDebug.LOGGER.error("Unable to open class {}", clazz.getName());
+                    throwable.printStackTrace();
+                    return null;
+                });
+    }
+
+    /**
+     * Shows the outline of the given class instead of its source, after the decompilation failed.
+     */
+    private void showFallbackOutline(Class<?> clazz, CodeViewScreen screen, AtomicBoolean sourceShown) {
+        String outline = ClassOutlineWriter.getOutline(clazz);
+        if (outline == null)
+            outline = "";
+
+        if (TotalDebug.PROXY.getClientConfig().useCompanionApp) {
+            String name = clazz.getName() + "#outline";
+            try {
+                this.store.write(name + ".java", outline.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to write outline of class " + clazz.getName(), e);
+                return;
+            }
+
+            showFile(name, true, 1, screen, sourceShown);
+            return;
+        }
+
+        String finalOutline = outline;
+        Minecraft.getMinecraft().addScheduledTask(() -> {
+            sourceShown.set(true);
+
+            if (screen.isOutline()) {
+                //the outline was closed in the meantime
+                if (Minecraft.getMinecraft().currentScreen != screen)
+                    return;
+            } else {
+                FMLClientHandler.instance().showGuiScreen(screen);
+            }
+
+            screen.setOutline(finalOutline, "gui.total_debug.code_viewer.decompilation_failed");
+        });
+    }
+
+    /**
+     * Opens the given decompiled file in the companion app or in the given screen, depending on the config.
+     *
+     * @param sourceShown set once the file is shown in the screen, an outline will not be shown afterwards
+     */
+    private void showFile(String name, boolean success, int line, CodeViewScreen screen, AtomicBoolean sourceShown) {
+        //open in companion app
+        if (TotalDebug.PROXY.getClientConfig().useCompanionApp) {
+            Path filePath;
+            try {
+                filePath = this.store.getPath(name + ".java");
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to write decompiled file " + name, e);
+                return;
+            }
+
+            CompanionApp companionApp = TotalDebug.PROXY.getCompanionApp();
+            companionApp.startAndConnect();
+
+            if (companionApp.isConnected()) {
+                Minecraft.getMinecraft().player.sendMessage(
+                        new TextComponentTranslation("companion_app.open_file",
+                                new TextComponentString(filePath.getFileName().toString())
+                                        .setStyle(new Style().setColor(TextFormatting.WHITE))
+                        ).setStyle(new Style().setColor(TextFormatting.GRAY))
+                );
+                companionApp.getCompanionAppClient().getMessageProcessor().enqueueMessage(new OpenFileMessage(filePath, line));
+                OPENED_IN_COMPANION_APP.increment();
+            }
+        } else { //open in default gui
+            String code = success ? readDecompiledFile(name) : "";
+            Minecraft.getMinecraft().addScheduledTask(() -> {
+                sourceShown.set(true);
+
+                if (screen.isOutline()) {
+                    //the outline was closed in the meantime
+                    if (Minecraft.getMinecraft().currentScreen != screen)
+                        return;
+                } else {
+                    FMLClientHandler.instance().showGuiScreen(screen);
+                }
+
+                screen.setJavaCode(code);
+                screen.jumpToLine(line);
+            });
+        }
+    }
+
+    /**
+     * @return the line of the declaration of the given nested class in the decompiled file of its top level class,
+     * starting at 1
+     */
+    private int getNestedClassLine(Class<?> nestedClass, Class<?> topLevelClass) {
+        //named classes can be found by their declaration
+        String simpleName = nestedClass.getSimpleName();
+        if (!simpleName.isEmpty() && !nestedClass.isSynthetic()) {
+            String code = readDecompiledFile(topLevelClass.getName());
+            Matcher matcher = Pattern.compile("\\b(class|interface|enum)\\s+" + Pattern.quote(simpleName) + "\\b").matcher(code);
+            if (matcher.find())
+                return getLineAt(code, matcher.start());
+        }
+
+        //anonymous classes are found by their first line number, lambdas don't have any bytecode
+        int firstLine = ClassUtil.getFirstLineNumber(nestedClass);
+        return firstLine == -1 ? 1 : getDecompiledLine(topLevelClass, firstLine);
+    }
+
+    /**
+     * @return the line of the given index in the given string, starting at 1
+     */
+    private static int getLineAt(String code, int index) {
+        int line = 1;
+        for (int i = 0; i < index; i++) {
+            if (code.charAt(i) == '\n')
+                line++;
+        }
+
+        return line;
+    }
+
+    /**
+     * @return the name of the cache entry of a single decompiled method
+     */
+    private static String getMethodEntryName(Class<?> clazz, String methodName) {
+        //constructors and static initializers contain characters which are not allowed in file names
+        return clazz.getName() + "#" + methodName.replace('<', '_').replace('>', '_');
+    }
+
+    /**
+     * @return the line of the first declaration of the given method in the given code, starting at 1; {@code 1} if
+     * the declaration could not be found
+     */
+    private static int findMethodLine(String code, Class<?> clazz, String methodName) {
+        String name = methodName.equals("<init>") ? clazz.getSimpleName() : methodName;
+        Matcher matcher = Pattern.compile("^[ \\t]+[\\w<>\\[\\], .?]*\\b" + Pattern.quote(name) + "\\(", Pattern.MULTILINE).matcher(code);
+        if (!matcher.find())
+            return 1;
+
+        return getLineAt(code, matcher.start());
+    }
+
+    /**
+     * @return the path of the decompiled file of the given class, which is created if the files are stored in a pack
+     */
+    public Path getDecompiledFilePath(String className) throws IOException {
+        return this.store.getPath(className + ".java");
+    }
+
+    /**
+     * @return the decompiled source of the given class; an empty string if the class is not decompiled
+     */
+    public String readDecompiledFile(String className) {
+        byte[] bytes = this.store.read(className + ".java");
+        return bytes == null ? "" : new String(bytes, StandardCharsets.UTF_8);
+    }
+
     private void createDirectory(Path path) {
         try {
             if (Files.notExists(path))
@@ -116,6 +695,22 @@ public class DecompilationManager {
         }
     }
 
+    /**
+     * Deletes the given directory and all files in it. Sub directories are not supported.
+     */
+    private void deleteDirectory(Path path) {
+        if (Files.notExists(path))
+            return;
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path file : stream)
+                Files.deleteIfExists(file);
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to delete directory " + path + "!", e);
+        }
+    }
+
     public Path getDecompilationDir() {
         return decompilationDir;
     }
@@ -123,4 +718,12 @@ public class DecompilationManager {
     public Path getDataDir() {
         return dataDir;
     }
+
+    public DecompilationExecutor getExecutor() {
+        return executor;
+    }
+
+    public DecompilationWatchdog getWatchdog() {
+        return watchdog;
+    }
 }
@@ -0,0 +1,157 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.BulkDecompiler;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import com.github.minecraft_ta.totaldebug.util.mappings.ClassUtil;
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import net.minecraft.client.Minecraft;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.Style;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.util.text.TextFormatting;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decompiles all loaded classes found by {@link #createClassGraph(String)} in the background, optionally writing them
+ * into a zip file.
+ */
+public abstract class BulkDecompileSubCommand extends CommandBase {
+
+    private static final String EXPORTS_FOLDER = "exports";
+
+    @Override
+    public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, @Nonnull String[] args) throws CommandException {
+        if (args.length < 1)
+            throw new WrongUsageException(getUsage(sender));
+
+        if (args[0].equalsIgnoreCase("cancel")) {
+            if (!BulkDecompiler.cancel())
+                throw new CommandException("commands.total_debug.decompile.bulk.not_running");
+
+            sender.sendMessage(new TextComponentTranslation("commands.total_debug.decompile.bulk.cancel_success")
+                    .setStyle(new Style().setColor(TextFormatting.GREEN)));
+            return;
+        }
+
+        ClassGraph classGraph = createClassGraph(args[0]);
+        if (classGraph == null)
+            throw new CommandException("commands.total_debug.decompile." + getName() + ".failed", args[0]);
+
+        Path zipFile = args.length > 1 && args[1].equalsIgnoreCase("zip") ? getZipFile(args[0]) : null;
+        long startTime = System.currentTimeMillis();
+
+        TotalDebug.PROXY.getDecompilationManager().getExecutor().supply(DecompilationExecutor.Priority.BULK, () -> {
+            List<Class<?>> classes = new ArrayList<>();
+            int notLoaded = 0;
+            try (ScanResult result = classGraph.enableClassInfo().scan()) {
+                for (ClassInfo info : result.getAllClasses()) {
+                    //nested classes are decompiled together with their top level class
+                    if (info.getName().indexOf('$') != -1)
+                        continue;
+
+                    //see BulkDecompiler
+                    Class<?> clazz = ClassUtil.getLoadedClass(info.getName());
+                    if (clazz != null)
+                        classes.add(clazz);
+                    else
+                        notLoaded++;
+                }
+            }
+
+            return Pair.of(classes, notLoaded);
+        }).thenAccept(pair -> {
+            List<Class<?>> classes = pair.getLeft();
+            if (pair.getRight() > 0)
+                sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.not_loaded", pair.getRight())
+                        .setStyle(new Style().setColor(TextFormatting.GRAY)));
+
+            if (classes.isEmpty()) {
+                sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.no_classes", args[0])
+                        .setStyle(new Style().setColor(TextFormatting.RED)));
+                return;
+            }
+
+            CompletableFuture<BulkDecompiler.Result> future;
+            try {
+                future = BulkDecompiler.start(classes, zipFile, (completed, failed, total) ->
+                        sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.progress", completed, total, failed)
+                                .setStyle(new Style().setColor(TextFormatting.GRAY))));
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to create zip file " + zipFile, e);
+                return;
+            }
+
+            if (future == null) {
+                sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.already_running", getName())
+                        .setStyle(new Style().setColor(TextFormatting.RED)));
+                return;
+            }
+
+            sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.started", classes.size())
+                    .setStyle(new Style().setColor(TextFormatting.GOLD)));
+
+            future.thenAccept(result -> {
+                int time = (int) ((System.currentTimeMillis() - startTime) / 1000);
+                sendMessage(sender, new TextComponentTranslation(
+                        result.isCancelled() ? "commands.total_debug.decompile.bulk.cancelled" : "commands.total_debug.decompile.bulk.finished",
+                        result.getCompleted(), result.getTotal(), result.getFailed(), time
+                ).setStyle(new Style().setColor(TextFormatting.GREEN)));
+
+                if (zipFile != null)
+                    sendMessage(sender, new TextComponentTranslation("commands.total_debug.decompile.bulk.zip", zipFile.toAbsolutePath().toString())
+                            .setStyle(new Style().setColor(TextFormatting.GRAY)));
+            });
+        }).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Error during bulk decompilation", throwable);
+            return null;
+        });
+    }
+
+    /**
+     * @return a class graph which finds all classes to decompile; {@code null} if the argument is invalid
+     */
+    @Nullable
+    protected abstract ClassGraph createClassGraph(@Nonnull String arg);
+
+    private Path getZipFile(String arg) throws CommandException {
+        Path exportsDir = TotalDebug.PROXY.getDecompilationManager().getDataDir().resolve(EXPORTS_FOLDER);
+        try {
+            Files.createDirectories(exportsDir);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to create directory " + exportsDir + "!", e);
+            throw new CommandException("commands.total_debug.decompile.bulk.zip_failed");
+        }
+
+        String fileName = arg.replaceAll("[^\\w.-]", "_") + "-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date());
+        return exportsDir.resolve(fileName + ".zip");
+    }
+
+    private static void sendMessage(ICommandSender sender, ITextComponent component) {
+        Minecraft.getMinecraft().addScheduledTask(() -> sender.sendMessage(component));
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.decompile." + getName() + ".usage";
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.minecraft_ta.totaldebug.command.decompile;
 
 import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.command.*;
@@ -20,7 +21,12 @@ public class DecompileCommand extends CommandTreeBase implements IClientCommand
         addSubcommand(new BlockSubCommand());
         addSubcommand(new EntitySubCommand());
         addSubcommand(new ClassSubCommand());
+        addSubcommand(new MethodSubCommand());
         addSubcommand(new EventListenerSubCommand());
+        addSubcommand(new PackageSubCommand());
+        addSubcommand(new ModSubCommand());
+        addSubcommand(new GrepSubCommand());
+        addSubcommand(new FileSubCommand());
     }
 
     @Nonnull
@@ -78,7 +84,7 @@ public class DecompileCommand extends CommandTreeBase implements IClientCommand
     public abstract static class DecompileClassSubCommand extends CommandBase {
 
         @Override
-        public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, String[] args) throws WrongUsageException {
+        public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, String[] args) throws CommandException {
             System.out.println(Minecraft.getMinecraft().player.world.getPrecipitationHeight(Minecraft.getMinecraft().player.getPosition()));
             if (args.length < 1)
                 throw new WrongUsageException(getUsage(sender));
@@ -89,7 +95,11 @@ public class DecompileCommand extends CommandTreeBase implements IClientCommand
                 return;
             }
 
-            TotalDebug.PROXY.getDecompilationManager().openGui(clazz);
+            //optional line from the line number table, used by search results
+            if (args.length > 1)
+                TotalDebug.PROXY.getDecompilationManager().openGuiAtOriginalLine(clazz, parseInt(args[1], 1), DecompilationExecutor.Priority.INTERACTIVE);
+            else
+                TotalDebug.PROXY.getDecompilationManager().openGui(clazz);
         }
 
         public String getClassNotFoundTranslationKey() {
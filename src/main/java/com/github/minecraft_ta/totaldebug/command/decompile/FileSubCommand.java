@@ -0,0 +1,38 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Opens an already decompiled file, used by the results of {@link GrepSubCommand}
+ */
+public class FileSubCommand extends CommandBase {
+
+    @Override
+    public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, @Nonnull String[] args) throws CommandException {
+        if (args.length < 1)
+            throw new WrongUsageException(getUsage(sender));
+
+        int line = args.length > 1 ? parseInt(args[1], 1) : 1;
+        TotalDebug.PROXY.getDecompilationManager().openDecompiledFile(args[0], line, DecompilationExecutor.Priority.INTERACTIVE);
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.decompile.file.usage";
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "file";
+    }
+}
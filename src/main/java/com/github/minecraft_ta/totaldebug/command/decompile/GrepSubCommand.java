@@ -0,0 +1,92 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.companionApp.CompanionApp;
+import com.github.minecraft_ta.totaldebug.companionApp.messages.SourceSearchResultsMessage;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import com.github.minecraft_ta.totaldebug.util.decompiler.SourceIndex;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.Style;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraft.util.text.event.ClickEvent;
+import net.minecraft.util.text.event.HoverEvent;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Searches the contents of all decompiled files
+ */
+public class GrepSubCommand extends CommandBase {
+
+    private static final int MAX_CHAT_RESULTS = 50;
+    private static final int MAX_COMPANION_APP_RESULTS = 1000;
+
+    @Override
+    public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, @Nonnull String[] args) throws CommandException {
+        if (args.length < 1)
+            throw new WrongUsageException(getUsage(sender));
+
+        String query = String.join(" ", args);
+        boolean useCompanionApp = TotalDebug.PROXY.getClientConfig().useCompanionApp;
+        long startTime = System.nanoTime();
+
+        TotalDebug.PROXY.getDecompilationManager().searchSources(query, useCompanionApp ? MAX_COMPANION_APP_RESULTS : MAX_CHAT_RESULTS,
+                DecompilationExecutor.Priority.INTERACTIVE).thenAccept(hits -> {
+            int time = (int) ((System.nanoTime() - startTime) / 1_000_000);
+
+            if (useCompanionApp && !hits.isEmpty()) {
+                CompanionApp companionApp = TotalDebug.PROXY.getCompanionApp();
+                companionApp.startAndConnect();
+
+                if (companionApp.isConnected()) {
+                    companionApp.getCompanionAppClient().getMessageProcessor().enqueueMessage(
+                            new SourceSearchResultsMessage(query, hits, time));
+                }
+                return;
+            }
+
+            sendResults(sender, hits, time);
+        }).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Unable to search decompiled sources for " + query, throwable);
+            return null;
+        });
+    }
+
+    private static void sendResults(ICommandSender sender, List<SourceIndex.Hit> hits, int time) {
+        sender.sendMessage(new TextComponentString("-------------------").setStyle(new Style().setColor(TextFormatting.GOLD)));
+
+        for (int i = 0; i < hits.size(); i++) {
+            SourceIndex.Hit hit = hits.get(i);
+            String command = "/decompile file " + hit.getClassName() + " " + hit.getLine();
+            sender.sendMessage(new TextComponentString(hit.getClassName() + ":" + hit.getLine() + " ")
+                    .setStyle(new Style().setColor(i % 2 == 0 ? TextFormatting.WHITE : TextFormatting.GRAY)
+                            .setHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponentTranslation("commands.total_debug.decompile.grep.click_to_open")))
+                            .setClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, command)))
+                    .appendSibling(new TextComponentString(hit.getText()).setStyle(new Style().setColor(TextFormatting.DARK_GRAY))));
+        }
+
+        sender.sendMessage(new TextComponentTranslation("commands.total_debug.decompile.grep.result_count", hits.size())
+                .setStyle(new Style().setColor(TextFormatting.GREEN))
+                .appendText(", ")
+                .appendSibling(new TextComponentTranslation("commands.total_debug.searchreference.time", time)));
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.decompile.grep.usage";
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "grep";
+    }
+}
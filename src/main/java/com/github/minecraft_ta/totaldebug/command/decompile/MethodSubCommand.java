@@ -0,0 +1,53 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+public class MethodSubCommand extends CommandBase {
+
+    private final ClassSubCommand classSubCommand = new ClassSubCommand();
+
+    @Override
+    public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, @Nonnull String[] args) throws CommandException {
+        if (args.length < 2)
+            throw new WrongUsageException(getUsage(sender));
+
+        Class<?> clazz = this.classSubCommand.getClassFromArg(args[0]);
+        if (clazz == null)
+            throw new CommandException("commands.total_debug.decompile.class.failed", args[0]);
+
+        TotalDebug.PROXY.getDecompilationManager().openMethodGui(clazz, args[1], DecompilationExecutor.Priority.INTERACTIVE);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTabCompletions(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender,
+                                          @Nonnull String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1)
+            return this.classSubCommand.getTabCompletions(server, sender, args, targetPos);
+        return Collections.emptyList();
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.decompile.method.usage";
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "method";
+    }
+}
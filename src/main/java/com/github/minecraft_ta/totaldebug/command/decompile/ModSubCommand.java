@@ -0,0 +1,48 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import io.github.classgraph.ClassGraph;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.fml.common.Loader;
+import net.minecraftforge.fml.common.ModContainer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ModSubCommand extends BulkDecompileSubCommand {
+
+    @Nullable
+    @Override
+    protected ClassGraph createClassGraph(@Nonnull String arg) {
+        ModContainer container = Loader.instance().getIndexedModList().get(arg);
+        if (container == null || container.getSource() == null)
+            return null;
+
+        //only scan the jar or directory the mod was loaded from
+        return new ClassGraph().overrideClasspath(container.getSource());
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTabCompletions(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender,
+                                          @Nonnull String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            List<String> options = new ArrayList<>(Loader.instance().getIndexedModList().keySet());
+            options.add("cancel");
+            return getListOfStringsMatchingLastWord(args, options);
+        }
+        if (args.length == 2)
+            return getListOfStringsMatchingLastWord(args, "zip");
+        return Collections.emptyList();
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "mod";
+    }
+}
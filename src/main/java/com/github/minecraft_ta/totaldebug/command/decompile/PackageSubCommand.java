@@ -0,0 +1,44 @@
+package com.github.minecraft_ta.totaldebug.command.decompile;
+
+import io.github.classgraph.ClassGraph;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class PackageSubCommand extends BulkDecompileSubCommand {
+
+    private static final Pattern PACKAGE_NAME = Pattern.compile("[\\w$]+(\\.[\\w$]+)*");
+
+    @Nullable
+    @Override
+    protected ClassGraph createClassGraph(@Nonnull String arg) {
+        //ClassGraph silently accepts anything and finds nothing
+        if (!PACKAGE_NAME.matcher(arg).matches())
+            return null;
+
+        return new ClassGraph().acceptPackages(arg);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTabCompletions(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender,
+                                          @Nonnull String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1)
+            return getListOfStringsMatchingLastWord(args, "cancel");
+        if (args.length == 2)
+            return getListOfStringsMatchingLastWord(args, "zip");
+        return Collections.emptyList();
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "package";
+    }
+}
@@ -4,6 +4,7 @@ import com.github.minecraft_ta.totaldebug.TotalDebug;
 import com.github.minecraft_ta.totaldebug.companionApp.CompanionApp;
 import com.github.minecraft_ta.totaldebug.companionApp.messages.OpenSearchResultsMessage;
 import com.github.minecraft_ta.totaldebug.util.mappings.BytecodeReferenceSearcher;
+import com.github.minecraft_ta.totaldebug.util.mappings.ReferenceSearchResults;
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
@@ -19,7 +20,6 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -55,7 +55,7 @@ public class SearchReferenceCommand extends CommandBase {
         long t = System.nanoTime() / 1_000_000;
 
         boolean searchMethod = args[0].equalsIgnoreCase("method");
-        CompletableFuture<Pair<Collection<String>, Integer>> future = BytecodeReferenceSearcher.findReferences(args[1], searchMethod);
+        CompletableFuture<Pair<ReferenceSearchResults, Integer>> future = BytecodeReferenceSearcher.findReferences(args[1], searchMethod);
         if (future == null) {
             throw new CommandException("commands.total_debug.searchreference.already_running");
         }
@@ -64,7 +64,7 @@ public class SearchReferenceCommand extends CommandBase {
             //don't print stacktrace if task was cancelled
             if (!(e instanceof RejectedExecutionException))
                 e.printStackTrace();
-            return Pair.of(Collections.emptyList(), -1);
+            return Pair.of(ReferenceSearchResults.EMPTY, -1);
         }).thenAccept(resultPair -> {
             if (resultPair.getRight() == -1) {
                 sender.sendMessage(new TextComponentString("There was an error during the scan. Please check " +
@@ -74,7 +74,7 @@ public class SearchReferenceCommand extends CommandBase {
 
             int scanTime = (int) (System.nanoTime() / 1_000_000 - t);
 
-            if (TotalDebug.PROXY.getClientConfig().useCompanionApp && resultPair.getLeft().size() > 0) {
+            if (TotalDebug.PROXY.getClientConfig().useCompanionApp && !resultPair.getLeft().isEmpty()) {
                 CompanionApp companionApp = TotalDebug.PROXY.getCompanionApp();
                 companionApp.startAndConnect();
 
@@ -86,14 +86,18 @@ public class SearchReferenceCommand extends CommandBase {
             } else {
                 sender.sendMessage(new TextComponentString("-------------------").setStyle(new Style().setColor(TextFormatting.GOLD)));
 
-                int i = 0;
-                for (String result : resultPair.getLeft()) {
-                    sender.sendMessage(new TextComponentString(result)
+                ReferenceSearchResults results = resultPair.getLeft();
+                for (int i = 0; i < results.size(); i++) {
+                    String owner = results.getOwner(i);
+                    String result = owner + "#" + results.getMethod(i);
+                    int line = results.getLine(i);
+                    String command = TotalDebug.PROXY.getClientConfig().decompileSingleMethods ?
+                            "/decompile method " + owner.replace('/', '.') + " " + results.getMethod(i) :
+                            "/decompile class " + owner.replace('/', '.') + (line != -1 ? " " + line : "");
+                    sender.sendMessage(new TextComponentString(line != -1 ? result + ":" + line : result)
                             .setStyle(new Style().setColor(i % 2 == 0 ? TextFormatting.WHITE : TextFormatting.GRAY)
                                     .setHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, new TextComponentTranslation("commands.total_debug.searchreference.click_to_open")))
-                                    .setClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, "/decompile class " + result.split("#")[0].replace('/', '.')))));
-
-                    i++;
+                                    .setClickEvent(new ClickEvent(ClickEvent.Action.RUN_COMMAND, command))));
                 }
 
                 sender.sendMessage(new TextComponentTranslation("commands.total_debug.searchreference.result_count", resultPair.getLeft().size())
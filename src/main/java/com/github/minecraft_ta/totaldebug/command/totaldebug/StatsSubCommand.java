@@ -0,0 +1,72 @@
+package com.github.minecraft_ta.totaldebug.command.totaldebug;
+
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.ITextComponent;
+import net.minecraft.util.text.Style;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.util.text.TextComponentTranslation;
+import net.minecraft.util.text.TextFormatting;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+
+public class StatsSubCommand extends CommandBase {
+
+    @Override
+    public void execute(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender, @Nonnull String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("reset")) {
+            Metrics.reset();
+            sender.sendMessage(new TextComponentTranslation("commands.total_debug.totaldebug.stats.reset_success")
+                    .setStyle(new Style().setColor(TextFormatting.GREEN)));
+            return;
+        }
+
+        List<String> report = Metrics.getReport();
+        if (report.isEmpty()) {
+            sender.sendMessage(new TextComponentTranslation("commands.total_debug.totaldebug.stats.empty")
+                    .setStyle(new Style().setColor(TextFormatting.GRAY)));
+            return;
+        }
+
+        ITextComponent component = new TextComponentTranslation("commands.total_debug.totaldebug.stats.header")
+                .setStyle(new Style().setColor(TextFormatting.GOLD));
+        for (String line : report) {
+            int separator = line.indexOf(':');
+            component.appendText("\n").appendSibling(
+                    new TextComponentString(line.substring(0, separator))
+                            .setStyle(new Style().setColor(TextFormatting.GRAY))
+                            .appendSibling(new TextComponentString(line.substring(separator))
+                                    .setStyle(new Style().setColor(TextFormatting.WHITE)))
+            );
+        }
+
+        sender.sendMessage(component);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getTabCompletions(@Nonnull MinecraftServer server, @Nonnull ICommandSender sender,
+                                          @Nonnull String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1)
+            return getListOfStringsMatchingLastWord(args, "reset");
+        return Collections.emptyList();
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.totaldebug.stats.usage";
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "stats";
+    }
+}
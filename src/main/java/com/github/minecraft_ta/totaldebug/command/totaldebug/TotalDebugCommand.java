@@ -0,0 +1,31 @@
+package com.github.minecraft_ta.totaldebug.command.totaldebug;
+
+import net.minecraft.command.ICommandSender;
+import net.minecraftforge.client.IClientCommand;
+import net.minecraftforge.server.command.CommandTreeBase;
+
+import javax.annotation.Nonnull;
+
+public class TotalDebugCommand extends CommandTreeBase implements IClientCommand {
+
+    public TotalDebugCommand() {
+        addSubcommand(new StatsSubCommand());
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return "totaldebug";
+    }
+
+    @Nonnull
+    @Override
+    public String getUsage(@Nonnull ICommandSender sender) {
+        return "commands.total_debug.totaldebug.usage";
+    }
+
+    @Override
+    public boolean allowUsageWithoutPrefix(ICommandSender sender, String message) {
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.minecraft_ta.totaldebug.companionApp;
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+import com.github.minecraft_ta.totaldebug.util.mappings.ClassUtil;
+import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Resolves types from their remapped bytecode instead of loading them like the {@code ReflectionTypeSolver}. Only
+ * the declarations of a class are read, so resolving a type never initializes it or runs any code of a mod.
+ */
+public class BytecodeTypeSolver implements TypeSolver {
+
+    private final ClassPool classPool = new ClassPool(false);
+
+    private TypeSolver parent;
+
+    public BytecodeTypeSolver() {
+        this.classPool.appendClassPath(new RemappedClassPath());
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        //the name of a nested class is its canonical name, the separators are replaced from the right until it's found
+        String binaryName = name;
+        while (true) {
+            CtClass ctClass = this.classPool.getOrNull(binaryName);
+            if (ctClass != null)
+                return SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass, getRoot()));
+
+            int index = binaryName.lastIndexOf('.');
+            if (index == -1)
+                return SymbolReference.unsolved(ResolvedReferenceTypeDeclaration.class);
+
+            binaryName = binaryName.substring(0, index) + "$" + binaryName.substring(index + 1);
+        }
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return this.parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    private static final class RemappedClassPath implements ClassPath {
+
+        @Override
+        public InputStream openClassfile(String className) throws NotFoundException {
+            byte[] bytecode = RemappingUtil.getRemappedClassHeader(className);
+            if (bytecode == null)
+                throw new NotFoundException(className);
+
+            return new ByteArrayInputStream(bytecode);
+        }
+
+        @Override
+        public URL find(String className) {
+            return ClassUtil.findClassFile(className);
+        }
+    }
+}
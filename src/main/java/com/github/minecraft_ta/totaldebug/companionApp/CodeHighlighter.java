@@ -1,88 +1,218 @@
 package com.github.minecraft_ta.totaldebug.companionApp;
 
-import com.github.javaparser.*;
-import org.apache.commons.lang3.tuple.Triple;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Highlights java code using a simple streaming tokenizer. The code is never parsed, so highlighting is linear in the
+ * length of the code and still works for code which doesn't compile. Unknown characters are copied as they are. Lines
+ * can also be highlighted one by one using {@link #highlightLine(String, int, StringBuilder)}.
+ */
 public class CodeHighlighter {
 
+    public static final int STATE_CODE = 0;
+    private static final int STATE_BLOCK_COMMENT = 1;
+    private static final int STATE_TEXT_BLOCK = 2;
+
+    private static final Histogram HIGHLIGHT_TIME = Metrics.histogram("highlighter.highlight");
+
+    private static final String KEYWORD_COLOR = "\u00a76";
+    private static final String STRING_COLOR = "\u00a7a";
+    private static final String LITERAL_COLOR = "\u00a73";
+    private static final String OPERATOR_COLOR = "\u00a77";
+    private static final String COMMENT_COLOR = "\u00a78";
+    private static final String RESET = "\u00a7r";
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null"
+    ));
+    private static final String OPERATOR_CHARS = "=<>!~?:&|+-*/^%(){}[];,.@";
+
+    /**
+     * @return the lines of the given code, with minecraft color codes around every highlighted token
+     */
     public static List<String> getHighlightedJavaCode(String code) {
-        List<String> lines = Arrays.asList(code.split("\n"));
+        long startTime = System.nanoTime();
+        List<String> lines = splitLines(code);
+
+        StringBuilder builder = new StringBuilder();
+        int state = STATE_CODE;
+        for (int i = 0; i < lines.size(); i++) {
+            builder.setLength(0);
+            state = highlightLine(lines.get(i), state, builder);
+            lines.set(i, builder.toString());
+        }
 
-        TokenRange globalTokenRange;
-        try {
-            globalTokenRange = JavaParserHelper.parse(code, false).getTokenRange().get();
-        } catch (Throwable t) {
-            return Collections.emptyList();
+        HIGHLIGHT_TIME.recordSince(startTime);
+        return lines;
+    }
+
+    /**
+     * Splits the given code into lines. Same as {@link String#split(String)}, trailing empty lines are removed.
+     */
+    public static List<String> splitLines(String code) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int index = code.indexOf('\n', start);
+            int end = index == -1 ? code.length() : index;
+            if (end > start && code.charAt(end - 1) == '\r')
+                end--;
+
+            lines.add(code.substring(start, end));
+            if (index == -1)
+                break;
+            start = index + 1;
         }
 
-        int currentLine = 0;
-        List<Triple<Integer, Integer, String>> lineReplacements = new ArrayList<>();
+        while (lines.size() > 1 && lines.get(lines.size() - 1).isEmpty())
+            lines.remove(lines.size() - 1);
 
-        for (JavaToken javaToken : globalTokenRange) {
-            Range range = javaToken.getRange().get();
-            String colorCode = getColorCode(javaToken);
+        return lines;
+    }
 
-            if (!colorCode.isEmpty()) {
-                int line = range.begin.line - 1;
-                if (line > currentLine) {
-                    lines.set(currentLine, replaceInLine(lines.get(currentLine), lineReplacements));
-                    currentLine = line;
+    /**
+     * Highlights a single line. Block comments and text blocks can span multiple lines, so the state at the end of the
+     * previous line has to be passed in.
+     *
+     * @param state the state returned for the previous line; {@link #STATE_CODE} for the first line
+     * @param out   the builder the highlighted line is appended to; {@code null} to only compute the state
+     * @return the state at the end of the line
+     */
+    public static int highlightLine(String line, int state, @Nullable StringBuilder out) {
+        int length = line.length();
+        int i = 0;
+
+        //continuation of a block comment or text block
+        if (state != STATE_CODE) {
+            String terminator = state == STATE_BLOCK_COMMENT ? "*/" : "\"\"\"";
+            int index = line.indexOf(terminator);
+            int end = index == -1 ? length : index + terminator.length();
+            appendSpan(out, line, 0, end, state == STATE_BLOCK_COMMENT ? COMMENT_COLOR : LITERAL_COLOR);
+            if (index == -1)
+                return state;
+
+            i = end;
+        }
 
-                    lineReplacements.clear();
+        while (i < length) {
+            char c = line.charAt(i);
+            char next = i + 1 < length ? line.charAt(i + 1) : '\0';
+            int end;
+
+            if (c == '/' && next == '/') {
+                end = length;
+                appendSpan(out, line, i, end, COMMENT_COLOR);
+            } else if (c == '/' && next == '*') {
+                int index = line.indexOf("*/", i + 2);
+                if (index == -1) {
+                    appendSpan(out, line, i, length, COMMENT_COLOR);
+                    return STATE_BLOCK_COMMENT;
                 }
 
-                int from = range.begin.column - 1;
-                int to = range.end.column;
+                end = index + 2;
+                appendSpan(out, line, i, end, COMMENT_COLOR);
+            } else if (line.startsWith("\"\"\"", i)) {
+                int index = line.indexOf("\"\"\"", i + 3);
+                if (index == -1) {
+                    appendSpan(out, line, i, length, LITERAL_COLOR);
+                    return STATE_TEXT_BLOCK;
+                }
 
-                lineReplacements.add(Triple.of(from, to, colorCode));
+                end = index + 3;
+                appendSpan(out, line, i, end, LITERAL_COLOR);
+            } else if (c == '"' || c == '\'') {
+                end = getQuotedLiteralEnd(line, i);
+                appendSpan(out, line, i, end, c == '"' ? STRING_COLOR : LITERAL_COLOR);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(line.charAt(end)))
+                    end++;
+                if (out != null)
+                    appendSpan(out, line, i, end, KEYWORDS.contains(line.substring(i, end)) ? KEYWORD_COLOR : null);
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                end = getNumberLiteralEnd(line, i);
+                appendSpan(out, line, i, end, LITERAL_COLOR);
+            } else if (OPERATOR_CHARS.indexOf(c) != -1) {
+                end = i + 1;
+                while (end < length && OPERATOR_CHARS.indexOf(line.charAt(end)) != -1 &&
+                       !line.startsWith("//", end) && !line.startsWith("/*", end))
+                    end++;
+                appendSpan(out, line, i, end, OPERATOR_COLOR);
+            } else {
+                end = i + 1;
+                if (out != null)
+                    out.append(c);
             }
-        }
 
-        lines.set(currentLine, replaceInLine(lines.get(currentLine), lineReplacements));
+            i = end;
+        }
 
-        return lines;
+        return STATE_CODE;
     }
 
-    private static String replaceInLine(String str, List<Triple<Integer, Integer, String>> lineReplacements) {
-        StringBuilder builder = new StringBuilder(str);
-
-        int offset = 0;
-
-        for (Triple<Integer, Integer, String> r : lineReplacements) {
-
-            builder.replace(
-                    r.getLeft() + offset,
-                    r.getMiddle() + offset,
-                    r.getRight() + builder.substring(r.getLeft() + offset, r.getMiddle() + offset) + "\u00a7r"
-            );
+    /**
+     * @param color the color of the span; {@code null} if the span is not highlighted
+     */
+    private static void appendSpan(@Nullable StringBuilder out, String line, int from, int to, @Nullable String color) {
+        if (out == null || to <= from)
+            return;
+
+        if (color != null)
+            out.append(color).append(line, from, to).append(RESET);
+        else
+            out.append(line, from, to);
+    }
 
-            //add color code and reset code to offset
-            offset += r.getRight().length() + 2;
+    /**
+     * @return the index after the closing quote; the end of the line if the literal is not closed
+     */
+    private static int getQuotedLiteralEnd(String line, int start) {
+        char quote = line.charAt(start);
+        int i = start + 1;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (c == quote)
+                return i;
         }
 
-        return builder.toString();
+        return line.length();
     }
 
-    private static String getColorCode(JavaToken token) {
-        switch (token.getCategory()) {
-            case KEYWORD:
-                return "\u00a76";
-            case LITERAL:
-                if (token.getKind() == JavaToken.Kind.STRING_LITERAL.getKind())
-                    return "\u00a7a";
-                return "\u00a73";
-            case OPERATOR:
-            case SEPARATOR:
-                return "\u00a77";
-            case COMMENT:
-                return "\u00a78";
+    private static int getNumberLiteralEnd(String line, int start) {
+        boolean hex = line.startsWith("0x", start) || line.startsWith("0X", start);
+        int i = start;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                i++;
+            } else if ((c == '+' || c == '-') && i > start) {
+                //exponent sign
+                char previous = Character.toLowerCase(line.charAt(i - 1));
+                if (hex ? previous != 'p' : previous != 'e')
+                    break;
+                i++;
+            } else {
+                break;
+            }
         }
 
-        return "";
+        return Math.min(i, line.length());
     }
 }
@@ -4,8 +4,11 @@ import com.github.minecraft_ta.totaldebug.DecompilationManager;
 import com.github.minecraft_ta.totaldebug.TotalDebug;
 import com.github.minecraft_ta.totaldebug.companionApp.messages.CodeViewClickMessage;
 import com.github.minecraft_ta.totaldebug.companionApp.messages.DecompileAndOpenRequestMessage;
+import com.github.minecraft_ta.totaldebug.companionApp.messages.OpenDecompiledFileRequestMessage;
 import com.github.minecraft_ta.totaldebug.companionApp.messages.OpenFileMessage;
 import com.github.minecraft_ta.totaldebug.companionApp.messages.OpenSearchResultsMessage;
+import com.github.minecraft_ta.totaldebug.companionApp.messages.SourceSearchRequestMessage;
+import com.github.minecraft_ta.totaldebug.companionApp.messages.SourceSearchResultsMessage;
 import com.github.tth05.scnet.Client;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
@@ -54,11 +57,18 @@ public class CompanionApp {
     private final Client companionAppClient = new Client();
     {
         companionAppClient.getMessageProcessor().registerMessage((short) 1, OpenFileMessage.class);
-        companionAppClient.getMessageProcessor().registerMessage((short) 2, OpenSearchResultsMessage.class);
         companionAppClient.getMessageProcessor().registerMessage((short) 3, DecompileAndOpenRequestMessage.class);
         companionAppClient.getMessageProcessor().registerMessage((short) 4, CodeViewClickMessage.class);
+        //id 2 was the search results message before results were sent as a string table, a new id makes older companion
+        //apps drop the message instead of misparsing it
+        companionAppClient.getMessageProcessor().registerMessage((short) 5, OpenSearchResultsMessage.class);
+        companionAppClient.getMessageProcessor().registerMessage((short) 6, SourceSearchRequestMessage.class);
+        companionAppClient.getMessageProcessor().registerMessage((short) 7, SourceSearchResultsMessage.class);
+        companionAppClient.getMessageProcessor().registerMessage((short) 8, OpenDecompiledFileRequestMessage.class);
         companionAppClient.getMessageBus().listenAlways(DecompileAndOpenRequestMessage.class, DecompileAndOpenRequestMessage::handle);
         companionAppClient.getMessageBus().listenAlways(CodeViewClickMessage.class, CodeViewClickMessage::handle);
+        companionAppClient.getMessageBus().listenAlways(SourceSearchRequestMessage.class, SourceSearchRequestMessage::handle);
+        companionAppClient.getMessageBus().listenAlways(OpenDecompiledFileRequestMessage.class, OpenDecompiledFileRequestMessage::handle);
     }
 
     public CompanionApp(Path appDir) {
@@ -8,10 +8,9 @@ import com.github.javaparser.ast.Node;
 import com.github.javaparser.resolution.Resolvable;
 import com.github.javaparser.resolution.declarations.*;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserMethodDeclaration;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
 import com.github.javaparser.symbolsolver.model.typesystem.ReferenceTypeImpl;
 import com.github.javaparser.symbolsolver.reflectionmodel.ReflectionMethodDeclaration;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 
 import javax.annotation.Nonnull;
 import java.lang.reflect.Field;
@@ -21,6 +20,11 @@ import java.util.Optional;
 
 public class JavaParserHelper {
 
+    /**
+     * shared by all parsers, resolving the same types again is expensive
+     */
+    public static final TypeSolver TYPE_SOLVER = new MemoizingTypeSolver(new BytecodeTypeSolver());
+
     public static Method getReflectMethodFromReflectionMethodDeclaration(ReflectionMethodDeclaration methodDeclaration) {
         try {
             Field field = methodDeclaration.getClass().getDeclaredField("method");
@@ -45,10 +49,10 @@ public class JavaParserHelper {
     }
 
     public static String getSimplifiedSignatureForResolvedObject(Object o) {
-        if (o instanceof JavaParserMethodDeclaration)
-            return getSimplifiedSignatureForJavaParserMethod((JavaParserMethodDeclaration) o);
-        else if (o instanceof ReflectionMethodDeclaration)
+        if (o instanceof ReflectionMethodDeclaration)
             return getSimplifiedSignatureForReflectionMethod(getReflectMethodFromReflectionMethodDeclaration((ReflectionMethodDeclaration) o));
+        else if (o instanceof ResolvedMethodDeclaration)
+            return getSimplifiedSignatureForResolvedMethod((ResolvedMethodDeclaration) o);
         else if (o instanceof ResolvedFieldDeclaration)
             return ((ResolvedFieldDeclaration) o).getName();
         else if(o instanceof ResolvedEnumConstantDeclaration)
@@ -59,8 +63,12 @@ public class JavaParserHelper {
         throw new IllegalArgumentException("Unable to generate simplified signature for parameter: " + o);
     }
 
+    /**
+     * @return a type signature for the given {@code method} which looks like javaparsers signature when it has no type
+     * information
+     */
     @Nonnull
-    public static String getSimplifiedSignatureForJavaParserMethod(@Nonnull JavaParserMethodDeclaration method) {
+    public static String getSimplifiedSignatureForResolvedMethod(@Nonnull ResolvedMethodDeclaration method) {
         StringBuilder signatureBuilder = new StringBuilder(method.getName()).append('(');
         for (int i = 0; i < method.getNumberOfParams(); i++) {
             ResolvedParameterDeclaration parameter = method.getParam(i);
@@ -107,7 +115,7 @@ public class JavaParserHelper {
     public static CompilationUnit parse(String code, boolean typeSolver) {
         ParserConfiguration config = new ParserConfiguration();
         if (typeSolver) {
-            config.setSymbolResolver(new JavaSymbolSolver(new ReflectionTypeSolver(false)));
+            config.setSymbolResolver(new JavaSymbolSolver(TYPE_SOLVER));
         }
 
         return new JavaParser(config).parse(code).getResult().orElse(null);
@@ -0,0 +1,49 @@
+package com.github.minecraft_ta.totaldebug.companionApp;
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers every type lookup of the wrapped solver, including failed ones. The symbol solver tries many candidate
+ * names for every simple name it resolves, so most lookups are misses which would otherwise hit the class loader again
+ * for every click. The classpath doesn't change while the game is running, therefore entries never expire.
+ */
+public class MemoizingTypeSolver implements TypeSolver {
+
+    private final TypeSolver delegate;
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> cache = new ConcurrentHashMap<>();
+
+    private TypeSolver parent;
+
+    public MemoizingTypeSolver(@Nonnull TypeSolver delegate) {
+        this.delegate = delegate;
+        this.delegate.setParent(this);
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        SymbolReference<ResolvedReferenceTypeDeclaration> reference = this.cache.get(name);
+        if (reference != null)
+            return reference;
+
+        //not using computeIfAbsent, the delegate might recursively look up other types
+        reference = this.delegate.tryToSolveType(name);
+        this.cache.putIfAbsent(name, reference);
+        return reference;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return this.parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+}
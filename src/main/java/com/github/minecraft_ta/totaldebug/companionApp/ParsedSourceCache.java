@@ -0,0 +1,141 @@
+package com.github.minecraft_ta.totaldebug.companionApp;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the parsed compilation units of the most recently used decompiled files. Entries are keyed by the path of the
+ * file and are parsed again once the modification time of the file changes. All units are parsed with the shared
+ * {@link JavaParserHelper#TYPE_SOLVER}, so resolved symbols are reused across files as well.
+ */
+public class ParsedSourceCache {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final LongAdder HITS = Metrics.counter("companion_app.parse_cache.hits");
+    private static final LongAdder MISSES = Metrics.counter("companion_app.parse_cache.misses");
+
+    private final JavaParser javaParser = new JavaParser(
+            new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(JavaParserHelper.TYPE_SOLVER)));
+
+    private final Map<Path, Entry> entries = new LinkedHashMap<Path, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, ParsedSourceCache.Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * @return the parsed file; {@code null} if the file could not be parsed
+     */
+    @Nullable
+    public synchronized CompilationUnit getCompilationUnit(@Nonnull Path path) throws IOException {
+        Entry entry = getEntry(path);
+        return entry == null ? null : entry.unit;
+    }
+
+    /**
+     * @param typeName  the simple name of the type declaring the member
+     * @param signature the signature of a method as returned by {@link MethodDeclaration#getSignature()} or the name
+     *                  of a field
+     * @return the line of the first declaration of the given member, starting at 1; {@code -1} if it was not found
+     */
+    public synchronized int getMemberLine(@Nonnull Path path, @Nonnull String typeName, @Nonnull String signature) throws IOException {
+        Entry entry = getEntry(path);
+        if (entry == null)
+            return -1;
+
+        if (entry.memberLines == null)
+            entry.memberLines = createMemberLineTable(entry.unit);
+        return entry.memberLines.getInt(typeName + "#" + signature);
+    }
+
+    @Nullable
+    private Entry getEntry(Path path) throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(path);
+        Entry entry = this.entries.get(path);
+        if (entry != null && entry.lastModified.equals(lastModified)) {
+            HITS.increment();
+            return entry;
+        }
+
+        MISSES.increment();
+        String code = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        CompilationUnit unit = this.javaParser.parse(code).getResult().orElse(null);
+        if (unit == null) {
+            this.entries.remove(path);
+            return null;
+        }
+
+        entry = new Entry(lastModified, unit);
+        this.entries.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * @return {@code typeName#signature} -> line, for the methods and fields of all types in the given unit
+     */
+    private static Object2IntMap<String> createMemberLineTable(CompilationUnit unit) {
+        Object2IntMap<String> memberLines = new Object2IntOpenHashMap<>();
+        memberLines.defaultReturnValue(-1);
+
+        for (TypeDeclaration<?> type : unit.findAll(TypeDeclaration.class)) {
+            String typeName = type.getNameAsString();
+            for (BodyDeclaration<?> member : type.getMembers()) {
+                if (!member.getRange().isPresent())
+                    continue;
+
+                int line = member.getRange().get().begin.line;
+                if (member instanceof MethodDeclaration) {
+                    putFirst(memberLines, typeName + "#" + ((MethodDeclaration) member).getSignature(), line);
+                } else if (member instanceof FieldDeclaration) {
+                    for (VariableDeclarator variable : ((FieldDeclaration) member).getVariables())
+                        putFirst(memberLines, typeName + "#" + variable.getNameAsString(), line);
+                }
+            }
+        }
+
+        return memberLines;
+    }
+
+    private static void putFirst(Object2IntMap<String> map, String key, int value) {
+        if (!map.containsKey(key))
+            map.put(key, value);
+    }
+
+    private static final class Entry {
+
+        private final FileTime lastModified;
+        private final CompilationUnit unit;
+        /**
+         * created on first use, most files are only clicked in and never jumped to
+         */
+        private Object2IntMap<String> memberLines;
+
+        private Entry(FileTime lastModified, CompilationUnit unit) {
+            this.lastModified = lastModified;
+            this.unit = unit;
+        }
+    }
+}
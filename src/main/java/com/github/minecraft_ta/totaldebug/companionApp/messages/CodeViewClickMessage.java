@@ -1,30 +1,42 @@
 package com.github.minecraft_ta.totaldebug.companionApp.messages;
 
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.Position;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import com.github.javaparser.ast.body.FieldDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.resolution.Resolvable;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
 import com.github.javaparser.resolution.declarations.ResolvedTypeDeclaration;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.model.typesystem.ReferenceTypeImpl;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.github.minecraft_ta.totaldebug.DecompilationManager;
 import com.github.minecraft_ta.totaldebug.TotalDebug;
 import com.github.minecraft_ta.totaldebug.companionApp.JavaParserHelper;
+import com.github.minecraft_ta.totaldebug.companionApp.ParsedSourceCache;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import com.github.minecraft_ta.totaldebug.util.decompiler.NavigationMap;
+import com.github.minecraft_ta.totaldebug.util.mappings.ClassUtil;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
 import com.github.tth05.scnet.message.AbstractMessageIncoming;
 import com.github.tth05.scnet.util.ByteBufferInputStream;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 
 public class CodeViewClickMessage extends AbstractMessageIncoming {
 
+    /**
+     * the time from receiving the click until the target is opened, includes the decompilation of the target class
+     */
+    private static final Histogram HANDLE_TIME = Metrics.histogram("companion_app.click");
+    private static final Histogram RESOLVE_TIME = Metrics.histogram("companion_app.click.resolve");
+
+    private static final ParsedSourceCache PARSED_SOURCES = new ParsedSourceCache();
+
     private String fileName;
     private int row;
     private int column;
@@ -37,81 +49,167 @@ public class CodeViewClickMessage extends AbstractMessageIncoming {
     }
 
     public static void handle(CodeViewClickMessage message) {
+        long startTime = System.nanoTime();
+        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+        try {
+            String name = message.fileName.endsWith(".java") ?
+                    message.fileName.substring(0, message.fileName.length() - ".java".length()) :
+                    message.fileName;
+            NavigationMap navigationMap = TotalDebug.PROXY.getDecompilationManager().getNavigationMap(name);
+            if (navigationMap != null)
+                future = navigate(navigationMap, message.row + 1, message.column + 1);
+            else
+                future = resolveAndNavigate(message);
+        } catch (Throwable t) {
+            TotalDebug.LOGGER.error("Unable to navigate from " + message.fileName, t);
+        }
+
+        future.whenComplete((v, throwable) -> HANDLE_TIME.recordSince(startTime));
+    }
+
+    /**
+     * Opens the target of the reference at the given position using the navigation map of the clicked file. The target
+     * class might have to be decompiled to find the line of the member, which is done on the decompilation executor.
+     *
+     * @return a future which completes once the target line was found
+     */
+    private static CompletableFuture<Void> navigate(NavigationMap navigationMap, int line, int column) {
+        int reference = navigationMap.getReferenceAt(line, column);
+        if (reference == -1)
+            return CompletableFuture.completedFuture(null);
+
+        String className = navigationMap.getTargetClassName(reference);
+        String member = navigationMap.getTargetMember(reference);
+        DecompilationManager decompilationManager = TotalDebug.PROXY.getDecompilationManager();
+
+        //Only decompile the target method if the class is not decompiled yet
+        if (member.indexOf('(') != -1 && TotalDebug.PROXY.getClientConfig().decompileSingleMethods) {
+            decompilationManager.openMethodGui(className, NavigationMap.getMethodName(member), DecompilationExecutor.Priority.COMPANION);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        //classes are opened at their declaration by default
+        if (member.isEmpty()) {
+            decompilationManager.openGui(className, 1, DecompilationExecutor.Priority.COMPANION);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        //the target class is loaded on the executor, loading it here would block the connection thread
+        return decompilationManager.getExecutor().supply(DecompilationExecutor.Priority.COMPANION, () -> {
+            Class<?> targetClass = ClassUtil.loadClass(className);
+            if (targetClass == null)
+                throw new CompletionException(new ClassNotFoundException(className));
+
+            return decompilationManager.decompileClassIfNotExists(targetClass).thenApplyAsync(success -> {
+                if (!success)
+                    return 1;
+
+                NavigationMap targetNavigationMap = decompilationManager.getNavigationMap(ClassUtil.getTopLevelClass(targetClass).getName());
+                return targetNavigationMap == null ? 1 : Math.max(1, targetNavigationMap.getDeclarationLine(className, member));
+            }, decompilationManager.getExecutor().asExecutor(DecompilationExecutor.Priority.COMPANION))
+                    .thenAccept(targetLine -> decompilationManager.openGui(targetClass, targetLine, DecompilationExecutor.Priority.COMPANION));
+        }).thenCompose(Function.identity()).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Unable to navigate to " + className + " " + member, throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Parses the clicked file and resolves the node at the clicked position, used for files which were decompiled
+     * before navigation maps existed. Parsing and resolving can take a while, so it's done on the decompilation
+     * executor instead of the thread of the companion app connection.
+     *
+     * @return a future which completes once the target line was found
+     */
+    private static CompletableFuture<Void> resolveAndNavigate(CodeViewClickMessage message) {
+        return TotalDebug.PROXY.getDecompilationManager().getExecutor().supply(DecompilationExecutor.Priority.COMPANION, () -> {
+            try {
+                return resolveAndNavigateNow(message);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }).thenCompose(Function.identity()).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Unable to navigate from " + message.fileName, throwable);
+            return null;
+        });
+    }
+
+    private static CompletableFuture<Void> resolveAndNavigateNow(CodeViewClickMessage message) throws Exception {
         Path decompilationDir = TotalDebug.PROXY.getDecompilationManager().getDecompilationDir();
         Path file = decompilationDir.resolve(message.fileName).toAbsolutePath();
         if (!Files.exists(file)) {
             TotalDebug.LOGGER.error("Companion app sent file path that doesn't exist: {}", file.toString());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        try {
-            String code = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
-            Position position = new Position(message.row + 1, message.column + 1);
-
-            ParserConfiguration config = new ParserConfiguration()
-                    .setSymbolResolver(new JavaSymbolSolver(new ReflectionTypeSolver(false)));
+        Position position = new Position(message.row + 1, message.column + 1);
 
-            JavaParser javaParser = new JavaParser(config);
-            CompilationUnit unit = javaParser.parse(code).getResult().orElse(null);
+        Object resolvedObject;
+        String name;
+        //clicks used to be resolved one after another on the connection thread, the symbol solver isn't thread safe
+        synchronized (PARSED_SOURCES) {
+            CompilationUnit unit = PARSED_SOURCES.getCompilationUnit(file);
             if (unit == null) {
                 TotalDebug.LOGGER.error("Unable to parse java file requested by companion app {}", file.toString());
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             Resolvable<?> node = JavaParserHelper.getResolvableNodeAt(unit.findRootNode(), position);
             if (node == null) {
                 TotalDebug.LOGGER.warn("Unable to find resolvable node at position: " + position);
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
-            Object resolvedObject;
+            long resolveStartTime = System.nanoTime();
             if (node instanceof NameExpr)
                 resolvedObject = ((NameExpr) node).calculateResolvedType();
             else
                 resolvedObject = node.resolve();
+            RESOLVE_TIME.recordSince(resolveStartTime);
 
             if(resolvedObject instanceof ReferenceTypeImpl)
                 resolvedObject = ((ReferenceTypeImpl) resolvedObject).getTypeDeclaration().get();
 
             ResolvedTypeDeclaration declaringType = JavaParserHelper.getDeclaringTypeFromResolvedObject(resolvedObject);
-            String name = declaringType.getQualifiedName();
+            name = declaringType.getQualifiedName();
             //Fix type name if it's an inner class
             try {
                 if (declaringType.containerType().isPresent())
                     name = name.substring(0, name.lastIndexOf('.')) + "$" + name.substring(name.lastIndexOf('.') + 1);
             } catch (Throwable ignored) {} //Calling containerType() breaks JavaParser sometimes
-            //Decompile the target class
-            TotalDebug.PROXY.getDecompilationManager().decompileClassIfNotExists(Class.forName(name));
-
-            //Parse the target class
-            config.setSymbolResolver(null);
-            CompilationUnit declaringTypeUnit = javaParser.parse(
-                    new String(
-                            Files.readAllBytes(decompilationDir.resolve(name + ".java")),
-                            StandardCharsets.UTF_8
-                    )
-            ).getResult().get();
-
-            //Find the resolved object in the target class
-            String signatureToMatch = JavaParserHelper.getSimplifiedSignatureForResolvedObject(resolvedObject);
-            Optional<BodyDeclaration<?>> optionalMember;
-            if (declaringTypeUnit.getTypes().isNonEmpty()) {
-                optionalMember = declaringTypeUnit.getType(0).getMembers().stream()
-                        .filter(m -> {
-                            if (m instanceof MethodDeclaration)
-                                return ((MethodDeclaration) m).getSignature().toString().equals(signatureToMatch);
-                            else if (m instanceof FieldDeclaration)
-                                return ((FieldDeclaration) m).getVariables().stream().anyMatch(v -> v.getName().asString().equals(signatureToMatch));
-                            return false;
-                        }).findFirst();
-            } else {
-                optionalMember = Optional.empty();
-            }
+        }
 
-            int line = optionalMember.map(bodyDeclaration -> bodyDeclaration.getRange().get().begin.line).orElse(1);
-            TotalDebug.PROXY.getDecompilationManager().openGui(Class.forName(name), line);
-        } catch (Throwable t) {
-            t.printStackTrace();
+        //Only decompile the target method if the class is not decompiled yet
+        Class<?> declaringClass = ClassUtil.loadClass(name);
+        if (declaringClass == null)
+            throw new ClassNotFoundException(name);
+
+        //Only decompile the target method if the class is not decompiled yet
+        if (resolvedObject instanceof ResolvedMethodDeclaration && TotalDebug.PROXY.getClientConfig().decompileSingleMethods) {
+            TotalDebug.PROXY.getDecompilationManager().openMethodGui(declaringClass,
+                    ((ResolvedMethodDeclaration) resolvedObject).getName(), DecompilationExecutor.Priority.COMPANION);
+            return CompletableFuture.completedFuture(null);
         }
+
+        //Decompile the target class, nested classes are part of their top level class
+        DecompilationManager decompilationManager = TotalDebug.PROXY.getDecompilationManager();
+        Object finalResolvedObject = resolvedObject;
+        return decompilationManager.decompileClassIfNotExists(declaringClass).thenAcceptAsync(success -> {
+            int line = 1;
+            if (success) {
+                //Find the resolved object in the target class
+                Path declaringFile = decompilationManager.getDecompiledFilePath(ClassUtil.getTopLevelClass(declaringClass).getName());
+                try {
+                    synchronized (PARSED_SOURCES) {
+                        String signatureToMatch = JavaParserHelper.getSimplifiedSignatureForResolvedObject(finalResolvedObject);
+                        line = Math.max(1, PARSED_SOURCES.getMemberLine(declaringFile, declaringClass.getSimpleName(), signatureToMatch));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            decompilationManager.openGui(declaringClass, line, DecompilationExecutor.Priority.COMPANION);
+        }, decompilationManager.getExecutor().asExecutor(DecompilationExecutor.Priority.COMPANION));
     }
 }
@@ -1,23 +1,29 @@
 package com.github.minecraft_ta.totaldebug.companionApp.messages;
 
 import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
 import com.github.tth05.scnet.message.AbstractMessageIncoming;
 import com.github.tth05.scnet.util.ByteBufferInputStream;
 
 public class DecompileAndOpenRequestMessage extends AbstractMessageIncoming {
 
     private String className;
+    /**
+     * a line from the line number table of the class, e.g. from a search result; -1 to open at the top
+     */
+    private int originalLine;
 
     @Override
     public void read(ByteBufferInputStream messageStream) {
         this.className = messageStream.readString();
+        this.originalLine = messageStream.readInt();
     }
 
     public static void handle(DecompileAndOpenRequestMessage message) {
-        try {
-            TotalDebug.PROXY.getDecompilationManager().openGui(Class.forName(message.className));
-        } catch (Throwable t) {
-            TotalDebug.LOGGER.error("Received decompile request message for unknown class", t);
-        }
+        //the class is looked up on the executor, loading it here would block the connection thread
+        if (message.originalLine != -1)
+            TotalDebug.PROXY.getDecompilationManager().openGuiAtOriginalLine(message.className, message.originalLine, DecompilationExecutor.Priority.COMPANION);
+        else
+            TotalDebug.PROXY.getDecompilationManager().openGui(message.className, 1, DecompilationExecutor.Priority.COMPANION);
     }
 }
@@ -0,0 +1,28 @@
+package com.github.minecraft_ta.totaldebug.companionApp.messages;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import com.github.tth05.scnet.message.AbstractMessageIncoming;
+import com.github.tth05.scnet.util.ByteBufferInputStream;
+
+/**
+ * Opens an already decompiled file, answered with an {@link OpenFileMessage}
+ */
+public class OpenDecompiledFileRequestMessage extends AbstractMessageIncoming {
+
+    /**
+     * the name of the decompiled file without its extension, as sent in a {@link SourceSearchResultsMessage}
+     */
+    private String name;
+    private int line;
+
+    @Override
+    public void read(ByteBufferInputStream messageStream) {
+        this.name = messageStream.readString();
+        this.line = messageStream.readInt();
+    }
+
+    public static void handle(OpenDecompiledFileRequestMessage message) {
+        TotalDebug.PROXY.getDecompilationManager().openDecompiledFile(message.name, Math.max(1, message.line), DecompilationExecutor.Priority.COMPANION);
+    }
+}
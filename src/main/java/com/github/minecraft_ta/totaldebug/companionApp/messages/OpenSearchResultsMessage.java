@@ -1,19 +1,29 @@
 package com.github.minecraft_ta.totaldebug.companionApp.messages;
 
+import com.github.minecraft_ta.totaldebug.util.StringTable;
+import com.github.minecraft_ta.totaldebug.util.mappings.ReferenceSearchResults;
 import com.github.tth05.scnet.message.AbstractMessageOutgoing;
 import com.github.tth05.scnet.util.ByteBufferOutputStream;
 
-import java.util.Collection;
+import java.util.Arrays;
 
+/**
+ * Results are sent as a string table containing every distinct owner and method name, followed by two table indices,
+ * the source line and the instruction index per result. The table is sorted and every entry only contains the suffix
+ * which differs from the previous entry:
+ * <pre>
+ * tableSize, (sharedPrefixLength, suffix)*, resultCount, (ownerIndex, methodIndex, line, instructionIndex)*
+ * </pre>
+ */
 public class OpenSearchResultsMessage extends AbstractMessageOutgoing {
 
     private final String query;
-    private final Collection<String> results;
+    private final ReferenceSearchResults results;
     private final boolean methodSearch;
     private final int classesCount;
     private final int time;
 
-    public OpenSearchResultsMessage(String query, Collection<String> results, boolean methodSearch, int classesCount, int time) {
+    public OpenSearchResultsMessage(String query, ReferenceSearchResults results, boolean methodSearch, int classesCount, int time) {
         this.query = query;
         this.results = results;
         this.methodSearch = methodSearch;
@@ -24,10 +34,46 @@ public class OpenSearchResultsMessage extends AbstractMessageOutgoing {
     @Override
     public void write(ByteBufferOutputStream messageStream) {
         messageStream.writeString(this.query);
+
+        StringTable table = this.results.getTable();
+
+        //sort table to maximize shared prefixes
+        String[] sortedTable = new String[table.size()];
+        for (int i = 0; i < sortedTable.length; i++)
+            sortedTable[i] = table.get(i);
+        Arrays.sort(sortedTable);
+
+        int[] idToSortedIndex = new int[sortedTable.length];
+        messageStream.writeInt(sortedTable.length);
+        String previous = "";
+        for (int i = 0; i < sortedTable.length; i++) {
+            String current = sortedTable[i];
+            idToSortedIndex[table.getId(current)] = i;
+
+            int prefixLength = getSharedPrefixLength(previous, current);
+            messageStream.writeInt(prefixLength);
+            messageStream.writeString(current.substring(prefixLength));
+            previous = current;
+        }
+
         messageStream.writeInt(this.results.size());
-        results.forEach(messageStream::writeString);
+        for (int i = 0; i < this.results.size(); i++) {
+            messageStream.writeInt(idToSortedIndex[this.results.getOwnerId(i)]);
+            messageStream.writeInt(idToSortedIndex[this.results.getMethodId(i)]);
+            messageStream.writeInt(this.results.getLine(i));
+            messageStream.writeInt(this.results.getInstructionIndex(i));
+        }
+
         messageStream.writeBoolean(this.methodSearch);
         messageStream.writeInt(this.classesCount);
         messageStream.writeInt(this.time);
     }
+
+    private static int getSharedPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i))
+            i++;
+        return i;
+    }
 }
@@ -0,0 +1,38 @@
+package com.github.minecraft_ta.totaldebug.companionApp.messages;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.companionApp.CompanionApp;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationExecutor;
+import com.github.tth05.scnet.message.AbstractMessageIncoming;
+import com.github.tth05.scnet.util.ByteBufferInputStream;
+
+/**
+ * Searches all decompiled sources, the results are sent back using a {@link SourceSearchResultsMessage}
+ */
+public class SourceSearchRequestMessage extends AbstractMessageIncoming {
+
+    private static final int MAX_RESULTS = 1000;
+
+    private String query;
+
+    @Override
+    public void read(ByteBufferInputStream messageStream) {
+        this.query = messageStream.readString();
+    }
+
+    public static void handle(SourceSearchRequestMessage message) {
+        long startTime = System.nanoTime();
+        TotalDebug.PROXY.getDecompilationManager().searchSources(message.query, MAX_RESULTS, DecompilationExecutor.Priority.COMPANION).thenAccept(hits -> {
+            CompanionApp companionApp = TotalDebug.PROXY.getCompanionApp();
+            if (!companionApp.isConnected())
+                return;
+
+            int time = (int) ((System.nanoTime() - startTime) / 1_000_000);
+            companionApp.getCompanionAppClient().getMessageProcessor().enqueueMessage(
+                    new SourceSearchResultsMessage(message.query, hits, time));
+        }).exceptionally(throwable -> {
+            TotalDebug.LOGGER.error("Unable to search decompiled sources for " + message.query, throwable);
+            return null;
+        });
+    }
+}
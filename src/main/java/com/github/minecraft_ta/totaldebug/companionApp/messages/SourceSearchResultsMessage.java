@@ -0,0 +1,41 @@
+package com.github.minecraft_ta.totaldebug.companionApp.messages;
+
+import com.github.minecraft_ta.totaldebug.util.decompiler.SourceIndex;
+import com.github.tth05.scnet.message.AbstractMessageOutgoing;
+import com.github.tth05.scnet.util.ByteBufferOutputStream;
+
+import java.util.List;
+
+/**
+ * Results of a {@link SourceSearchRequestMessage}. Every hit can be opened using an
+ * {@link OpenDecompiledFileRequestMessage}.
+ * <pre>
+ * query, resultCount, (className, line, text)*, time
+ * </pre>
+ */
+public class SourceSearchResultsMessage extends AbstractMessageOutgoing {
+
+    private final String query;
+    private final List<SourceIndex.Hit> hits;
+    private final int time;
+
+    public SourceSearchResultsMessage(String query, List<SourceIndex.Hit> hits, int time) {
+        this.query = query;
+        this.hits = hits;
+        this.time = time;
+    }
+
+    @Override
+    public void write(ByteBufferOutputStream messageStream) {
+        messageStream.writeString(this.query);
+
+        messageStream.writeInt(this.hits.size());
+        for (SourceIndex.Hit hit : this.hits) {
+            messageStream.writeString(hit.getClassName());
+            messageStream.writeInt(hit.getLine());
+            messageStream.writeString(hit.getText());
+        }
+
+        messageStream.writeInt(this.time);
+    }
+}
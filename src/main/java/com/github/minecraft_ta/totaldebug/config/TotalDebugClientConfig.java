@@ -1,6 +1,8 @@
 package com.github.minecraft_ta.totaldebug.config;
 
+import com.github.minecraft_ta.totaldebug.DecompilationManager;
 import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.config.ConfigElement;
 import net.minecraftforge.common.config.Configuration;
@@ -14,9 +16,19 @@ import java.util.List;
 
 public class TotalDebugClientConfig {
 
+    private static final String CATEGORY_GENERAL = "general";
     private static final String CATEGORY_DECOMPILATION = "decompilation";
 
     public boolean useCompanionApp;
+    public boolean captureTransformedClasses;
+    public boolean prefetchDecompilation;
+    public int prefetchDependencies;
+    public int decompilationThreads;
+    public int decompilationTimeout;
+    public int decompilationHeapLimit;
+    public boolean usePackStore;
+    public boolean decompileSingleMethods;
+    public int metricsLogInterval;
 
     private Configuration configuration;
 
@@ -29,6 +41,14 @@ public class TotalDebugClientConfig {
         if (event.getModID().equals(TotalDebug.MOD_ID)) {
             System.out.println(FMLCommonHandler.instance().getEffectiveSide());
             load();
+
+            DecompilationManager decompilationManager = TotalDebug.PROXY.getDecompilationManager();
+            if (decompilationManager != null && decompilationManager.getExecutor() != null) {
+                decompilationManager.getExecutor().setParallelism(decompilationThreads);
+                decompilationManager.getWatchdog().setLimits(decompilationTimeout, decompilationHeapLimit);
+            }
+
+            Metrics.setLogInterval(metricsLogInterval);
         }
     }
 
@@ -39,6 +59,15 @@ public class TotalDebugClientConfig {
 
     private void load() {
         useCompanionApp = configuration.getBoolean("useCompanionApp", CATEGORY_DECOMPILATION, true, "Whether or not to open decompiled files in the TotalDebug companion app");
+        prefetchDecompilation = configuration.getBoolean("prefetchDecompilation", CATEGORY_DECOMPILATION, false, "Whether or not to decompile the classes of looked at blocks, entities and hovered items in the background, so they open faster");
+        prefetchDependencies = configuration.getInt("prefetchDependencies", CATEGORY_DECOMPILATION, 8, 0, 64, "The maximum amount of classes referenced by an opened class which are decompiled in the background, so navigating to them is faster. 0 to disable");
+        decompilationThreads = configuration.getInt("decompilationThreads", CATEGORY_DECOMPILATION, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1, 64, "The amount of threads used to decompile classes in the background");
+        decompileSingleMethods = configuration.getBoolean("decompileSingleMethods", CATEGORY_DECOMPILATION, false, "Whether or not search results and code navigation only decompile the target method instead of the whole class, if the class is not decompiled yet");
+        usePackStore = configuration.getBoolean("usePackStore", CATEGORY_DECOMPILATION, false, "Whether or not to store decompiled files compressed in a single pack file instead of one file per class. Files are only written to the decompiled-files folder when the companion app opens them. Requires a restart");
+        decompilationTimeout = configuration.getInt("decompilationTimeout", CATEGORY_DECOMPILATION, 60, 0, 3600, "The amount of seconds after which a decompilation is cancelled and the outline of the class is shown instead. 0 to disable");
+        decompilationHeapLimit = configuration.getInt("decompilationHeapLimit", CATEGORY_DECOMPILATION, 90, 0, 100, "The heap usage in percent above which the decompilation with the lowest priority is cancelled, bulk and prefetch jobs first. 0 to disable");
+        captureTransformedClasses = configuration.getBoolean("captureTransformedClasses", CATEGORY_DECOMPILATION, false, "Whether or not to keep the transformed bytecode of loaded classes in memory, so that decompiled classes include coremod and ASM changes. Only affects classes loaded after pre-init. Requires a restart");
+        metricsLogInterval = configuration.getInt("metricsLogInterval", CATEGORY_GENERAL, 30, 0, 1440, "The interval in minutes in which the timings of decompilations, searches and the code viewer are written to the log. 0 to disable. Use /totaldebug stats to show them in-game");
 
         if (configuration.hasChanged())
             configuration.save();
@@ -47,6 +76,7 @@ public class TotalDebugClientConfig {
     public List<IConfigElement> getConfigElements() {
         List<IConfigElement> list = new ArrayList<>();
 
+        list.add(new ConfigElement(configuration.getCategory(CATEGORY_GENERAL)));
         list.add(new ConfigElement(configuration.getCategory(CATEGORY_DECOMPILATION)));
 
         return list;
@@ -38,6 +38,10 @@ public class Scrollbar {
         return (int) currentOffset;
     }
 
+    public void setOffset(int offset) {
+        this.currentOffset = Math.max(min, Math.min(max, offset));
+    }
+
     public void setMin(int min) {
         this.min = min;
     }
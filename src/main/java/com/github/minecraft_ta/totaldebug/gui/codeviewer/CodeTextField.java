@@ -1,20 +1,34 @@
 package com.github.minecraft_ta.totaldebug.gui.codeviewer;
 
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.FontRenderer;
 import net.minecraft.client.gui.Gui;
+import net.minecraft.client.renderer.GLAllocation;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.util.ResourceLocation;
 import org.lwjgl.opengl.GL11;
 
-import java.util.List;
-
 public class CodeTextField extends Gui {
 
     private static final int PADDING = 5;
+    private static final ResourceLocation FONT_TEXTURE = new ResourceLocation("textures/font/ascii.png");
 
-    private List<String> lines;
+    private HighlightedLines lines;
+    private TextSearchIndex.Hits searchHits;
+    private int currentSearchHit;
 
     private final int x, y, width, height;
 
+    /**
+     * the visible lines are compiled into a display list, which is only rebuilt if one of the values below changes
+     */
+    private int displayList = -1;
+    private HighlightedLines cachedLines;
+    private int cachedLinesVersion;
+    private int cachedStartLine;
+    private int cachedStartColumn;
+    private float cachedScale;
+
     public CodeTextField(int x, int y, int width, int height) {
         this.x = x;
         this.y = y;
@@ -22,14 +36,17 @@ public class CodeTextField extends Gui {
         this.height = height;
     }
 
-    public void draw(FontRenderer fontRenderer, float scale, int startLine) {
+    /**
+     * @param startColumn the amount of characters which are cut off at the start of each line
+     */
+    public void draw(FontRenderer fontRenderer, float scale, int startLine, int startColumn) {
         //border
         drawHorizontalLine(x, x + width, y, 0xFF000000);
         drawHorizontalLine(x, x + width, y + height, 0xFF000000);
         drawVerticalLine(x, y, y + height, 0xFF000000);
         drawVerticalLine(x + width, y, y + height, 0xFF000000);
 
-        if (lines == null || lines.isEmpty())
+        if (lines == null || lines.size() == 0)
             return;
 
         int visibleRows = getVisibleRows(scale);
@@ -37,37 +54,154 @@ public class CodeTextField extends Gui {
         if (visibleRows > lines.size())
             visibleRows = lines.size();
 
-        float lineY = y + PADDING;
-        float lineX = x + PADDING;
+        lines.request(startLine, startLine + visibleRows);
 
         GlStateManager.pushMatrix();
         GlStateManager.scale(scale, scale, 1);
         GlStateManager.enableBlend();
         GlStateManager.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
 
+        if (searchHits != null)
+            drawSearchHits(fontRenderer, scale, startLine, startColumn, visibleRows);
+
+        //GlStateManager skips redundant state changes, so the state has to be the same when compiling and calling the list
+        Minecraft.getMinecraft().getTextureManager().bindTexture(FONT_TEXTURE);
+        GlStateManager.color(1, 1, 1, 1);
+
+        if (isRenderCacheOutdated(scale, startLine, startColumn)) {
+            if (this.displayList == -1)
+                this.displayList = GLAllocation.generateDisplayLists(1);
+
+            GlStateManager.glNewList(this.displayList, GL11.GL_COMPILE);
+            drawLines(fontRenderer, scale, startLine, startColumn, visibleRows);
+            GlStateManager.glEndList();
+
+            this.cachedLines = lines;
+            this.cachedLinesVersion = lines.getVersion();
+            this.cachedStartLine = startLine;
+            this.cachedStartColumn = startColumn;
+            this.cachedScale = scale;
+        }
+
+        GlStateManager.callList(this.displayList);
+
+        //the list changes the texture and color without GlStateManager knowing about it
+        GlStateManager.bindTexture(0);
+        GlStateManager.resetColor();
+
+        GlStateManager.popMatrix();
+    }
+
+    private boolean isRenderCacheOutdated(float scale, int startLine, int startColumn) {
+        return this.displayList == -1 || this.cachedLines != lines || this.cachedLinesVersion != lines.getVersion() ||
+               this.cachedStartLine != startLine || this.cachedStartColumn != startColumn || this.cachedScale != scale;
+    }
+
+    private void drawLines(FontRenderer fontRenderer, float scale, int startLine, int startColumn, int visibleRows) {
+        float lineY = y + PADDING;
+        float lineX = x + PADDING;
+
         for (int i = startLine; i < Math.min(lines.size(), startLine + visibleRows); i++) {
-            //TODO: horizontal scrolling
             fontRenderer.drawString(
-                    fontRenderer.trimStringToWidth(lines.get(i), (int) ((this.width - 2 * PADDING) / scale)),
+                    fontRenderer.trimStringToWidth(skipColumns(lines.getLine(i), startColumn), (int) ((this.width - 2 * PADDING) / scale)),
                     lineX / scale,
                     lineY / scale,
                     0xFFFFFFFF, false);
 
             lineY += 10f * scale;
         }
+    }
 
-        GlStateManager.popMatrix();
+    /**
+     * Draws the background of all search hits in the visible lines. Only the hits in the visible window are looked at.
+     */
+    private void drawSearchHits(FontRenderer fontRenderer, float scale, int startLine, int startColumn, int visibleRows) {
+        LineStorage rawLines = lines.getRawLines();
+        int endLine = Math.min(lines.size(), startLine + visibleRows);
+        int maxX = (int) ((this.width - PADDING) / scale);
+
+        for (int hit = searchHits.getFirstHitFromLine(startLine); hit < searchHits.size(); hit++) {
+            int line = searchHits.getLine(hit);
+            if (line >= endLine)
+                break;
+
+            String rawLine = rawLines.get(line);
+            int fromColumn = Math.max(startColumn, searchHits.getColumn(hit));
+            int toColumn = Math.min(rawLine.length(), searchHits.getColumn(hit) + searchHits.getLength());
+            if (fromColumn >= toColumn)
+                continue;
+
+            int left = (int) ((x + PADDING) / scale) + fontRenderer.getStringWidth(rawLine.substring(startColumn, fromColumn));
+            int right = left + fontRenderer.getStringWidth(rawLine.substring(fromColumn, toColumn));
+            int top = (int) ((y + PADDING + (line - startLine) * 10f * scale) / scale) - 1;
+            if (left >= maxX)
+                continue;
+
+            drawRect(left, top, Math.min(right, maxX), top + 10, hit == currentSearchHit ? 0xC0D19A66 : 0x6061AFEF);
+        }
+    }
+
+    /**
+     * @return the given line without its first {@code column} characters, the color of the first remaining character
+     * is kept
+     */
+    private static String skipColumns(String line, int column) {
+        if (column <= 0)
+            return line;
+
+        String color = "";
+        int skipped = 0;
+        int i = 0;
+        while (i < line.length() && skipped < column) {
+            if (line.charAt(i) == '\u00a7' && i + 1 < line.length()) {
+                char code = line.charAt(i + 1);
+                color = code == 'r' ? "" : line.substring(i, i + 2);
+                i += 2;
+                continue;
+            }
+
+            skipped++;
+            i++;
+        }
+
+        return color + line.substring(i);
+    }
+
+    /**
+     * Frees the render cache. Has to be called once this text field is not used anymore.
+     */
+    public void deleteRenderCache() {
+        if (this.displayList != -1) {
+            GLAllocation.deleteDisplayLists(this.displayList);
+            this.displayList = -1;
+        }
     }
 
     public int getVisibleRows(float scale) {
         return (int) Math.ceil((this.height - PADDING * 2) / (10f * scale));
     }
 
-    public void setLines(List<String> lines) {
+    /**
+     * @return the approximate amount of characters that fit into one line, based on the average character width
+     */
+    public int getVisibleColumns(float scale) {
+        return (int) ((this.width - PADDING * 2) / (6f * scale));
+    }
+
+    /**
+     * @param hits       the hits to show; {@code null} to not show any
+     * @param currentHit the index of the hit which is drawn in a different color
+     */
+    public void setSearchHits(TextSearchIndex.Hits hits, int currentHit) {
+        this.searchHits = hits;
+        this.currentSearchHit = currentHit;
+    }
+
+    public void setLines(HighlightedLines lines) {
         this.lines = lines;
     }
 
-    public List<String> getLines() {
+    public HighlightedLines getLines() {
         return lines;
     }
 }
@@ -1,28 +1,71 @@
 package com.github.minecraft_ta.totaldebug.gui.codeviewer;
 
 import com.github.minecraft_ta.totaldebug.gui.Scrollbar;
-import com.github.minecraft_ta.totaldebug.companionApp.CodeHighlighter;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiScreen;
+import net.minecraft.client.gui.GuiTextField;
+import net.minecraft.client.resources.I18n;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CodeViewScreen extends GuiScreen {
 
+    private static final int HORIZONTAL_STEP_SIZE = 8;
+
+    /**
+     * builds the indexes of the shown code, separate from the highlighter so that large files don't delay highlighting
+     */
+    private static final ExecutorService INDEX_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TotalDebug Code Indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private CodeTextField codeTextField;
     private Scrollbar scrollbar;
+    private Scrollbar horizontalScrollbar;
+
+    /**
+     * the input for jumping to a line or member, {@code null} if it's not shown
+     */
+    private GuiTextField goToField;
+    private CompletableFuture<MemberLineIndex> memberLineIndex;
+
+    /**
+     * the input of the find bar, {@code null} if it's not shown
+     */
+    private GuiTextField findField;
+    private CompletableFuture<TextSearchIndex> searchIndex;
+    private TextSearchIndex.Hits searchHits;
+    private int currentSearchHit;
+    /**
+     * true while a search waits for the search index to be built
+     */
+    private boolean searchPending;
 
     private float scale = 0.7f;
 
+    /**
+     * true while only the outline of the class is shown
+     */
+    private boolean outline;
+    private String outlineHint;
+
     @Override
     public void initGui() {
         super.initGui();
+        Keyboard.enableRepeatEvents(true);
 
-        List<String> oldLines = null;
-        if (codeTextField != null)
+        HighlightedLines oldLines = null;
+        if (codeTextField != null) {
             oldLines = codeTextField.getLines();
+            codeTextField.deleteRenderCache();
+        }
 
         codeTextField = new CodeTextField(5, 5, this.width - 10, this.height - 10);
 
@@ -30,6 +73,16 @@ public class CodeViewScreen extends GuiScreen {
             codeTextField.setLines(oldLines);
 
         scrollbar = new Scrollbar(0, oldLines == null ? 1 : oldLines.size() - 1);
+        horizontalScrollbar = new Scrollbar(0, 0);
+        horizontalScrollbar.setStepSize(HORIZONTAL_STEP_SIZE);
+        if (oldLines != null)
+            updateScrollbarParameters();
+
+        if (goToField != null)
+            openGoToField();
+        if (findField != null)
+            openFindField();
+        codeTextField.setSearchHits(searchHits, currentSearchHit);
     }
 
     @Override
@@ -40,16 +93,56 @@ public class CodeViewScreen extends GuiScreen {
         boolean prev = this.fontRenderer.getUnicodeFlag();
         this.fontRenderer.setUnicodeFlag(false);
 
-        this.codeTextField.draw(this.fontRenderer, scale, scrollbar.getOffset());
+        this.codeTextField.draw(this.fontRenderer, scale, scrollbar.getOffset(), horizontalScrollbar.getOffset());
+
+        if (this.outline) {
+            String text = I18n.format(this.outlineHint);
+            this.fontRenderer.drawString(text, this.width - this.fontRenderer.getStringWidth(text) - 10, 10, 0xFF9DA5B4);
+        }
+
+        if (this.goToField != null)
+            drawField(this.goToField, "gui.total_debug.code_viewer.go_to");
+
+        if (this.findField != null) {
+            drawField(this.findField, "gui.total_debug.code_viewer.find");
+
+            if (this.searchHits != null && !this.findField.getText().isEmpty()) {
+                String count = this.searchHits.size() == 0 ?
+                        I18n.format("gui.total_debug.code_viewer.find.no_results") :
+                        (this.currentSearchHit + 1) + "/" + this.searchHits.size();
+                this.fontRenderer.drawString(count, this.findField.x - this.fontRenderer.getStringWidth(count) - 5,
+                        this.findField.y + (this.findField.height - 8) / 2, 0xFF9DA5B4);
+            }
+        }
 
         this.fontRenderer.setUnicodeFlag(prev);
     }
 
+    private void drawField(GuiTextField field, String placeholderKey) {
+        field.drawTextBox();
+        if (field.getText().isEmpty()) {
+            this.fontRenderer.drawString(I18n.format(placeholderKey),
+                    field.x + 4, field.y + (field.height - 8) / 2, 0xFF5C6370);
+        }
+    }
+
+    @Override
+    public void onGuiClosed() {
+        super.onGuiClosed();
+        Keyboard.enableRepeatEvents(false);
+        this.codeTextField.deleteRenderCache();
+    }
+
     @Override
     public void handleMouseInput() throws IOException {
         super.handleMouseInput();
         int delta = Mouse.getEventDWheel();
 
+        if (isShiftKeyDown()) {
+            horizontalScrollbar.mouseWheel(delta);
+            return;
+        }
+
         if (!Keyboard.isKeyDown(Keyboard.KEY_LCONTROL)) {
             scrollbar.mouseWheel(delta);
             return;
@@ -63,13 +156,263 @@ public class CodeViewScreen extends GuiScreen {
         updateScrollbarParameters();
     }
 
+    @Override
+    protected void mouseClicked(int mouseX, int mouseY, int mouseButton) throws IOException {
+        super.mouseClicked(mouseX, mouseY, mouseButton);
+        if (this.goToField != null)
+            this.goToField.mouseClicked(mouseX, mouseY, mouseButton);
+        if (this.findField != null)
+            this.findField.mouseClicked(mouseX, mouseY, mouseButton);
+    }
+
+    @Override
+    protected void keyTyped(char typedChar, int keyCode) throws IOException {
+        if (this.goToField != null) {
+            if (keyCode == Keyboard.KEY_ESCAPE) {
+                this.goToField = null;
+            } else if (keyCode == Keyboard.KEY_RETURN || keyCode == Keyboard.KEY_NUMPADENTER) {
+                goTo(this.goToField.getText().trim());
+            } else {
+                this.goToField.textboxKeyTyped(typedChar, keyCode);
+            }
+            return;
+        }
+
+        if (this.findField != null) {
+            if (keyCode == Keyboard.KEY_ESCAPE) {
+                closeFindField();
+            } else if (keyCode == Keyboard.KEY_RETURN || keyCode == Keyboard.KEY_NUMPADENTER || keyCode == Keyboard.KEY_F3) {
+                jumpToSearchHit(this.currentSearchHit + (isShiftKeyDown() ? -1 : 1));
+            } else {
+                String text = this.findField.getText();
+                this.findField.textboxKeyTyped(typedChar, keyCode);
+                if (!text.equals(this.findField.getText()))
+                    updateSearch();
+            }
+            return;
+        }
+
+        if (isCtrlKeyDown() && keyCode == Keyboard.KEY_G) {
+            closeFindField();
+            openGoToField();
+            return;
+        }
+
+        if (isCtrlKeyDown() && keyCode == Keyboard.KEY_F) {
+            this.goToField = null;
+            openFindField();
+            return;
+        }
+
+        int visibleRows = this.codeTextField.getVisibleRows(scale);
+        switch (keyCode) {
+            case Keyboard.KEY_UP:
+                scrollbar.setOffset(scrollbar.getOffset() - 1);
+                break;
+            case Keyboard.KEY_DOWN:
+                scrollbar.setOffset(scrollbar.getOffset() + 1);
+                break;
+            case Keyboard.KEY_PRIOR:
+                scrollbar.setOffset(scrollbar.getOffset() - visibleRows);
+                break;
+            case Keyboard.KEY_NEXT:
+                scrollbar.setOffset(scrollbar.getOffset() + visibleRows);
+                break;
+            case Keyboard.KEY_LEFT:
+                horizontalScrollbar.setOffset(horizontalScrollbar.getOffset() - HORIZONTAL_STEP_SIZE);
+                break;
+            case Keyboard.KEY_RIGHT:
+                horizontalScrollbar.setOffset(horizontalScrollbar.getOffset() + HORIZONTAL_STEP_SIZE);
+                break;
+            case Keyboard.KEY_HOME:
+                if (isCtrlKeyDown())
+                    scrollbar.setOffset(0);
+                horizontalScrollbar.setOffset(0);
+                break;
+            case Keyboard.KEY_END:
+                if (isCtrlKeyDown())
+                    scrollbar.setOffset(Integer.MAX_VALUE);
+                break;
+            case Keyboard.KEY_F3:
+                if (this.searchHits != null)
+                    jumpToSearchHit(this.currentSearchHit + (isShiftKeyDown() ? -1 : 1));
+                break;
+            default:
+                super.keyTyped(typedChar, keyCode);
+        }
+    }
+
+    @Override
+    public void updateScreen() {
+        super.updateScreen();
+        if (this.goToField != null)
+            this.goToField.updateCursorCounter();
+        if (this.findField != null)
+            this.findField.updateCursorCounter();
+    }
+
+    private void openGoToField() {
+        String text = this.goToField != null ? this.goToField.getText() : "";
+        this.goToField = new GuiTextField(0, this.fontRenderer, this.width - 160, 10, 150, 14);
+        this.goToField.setFocused(true);
+        this.goToField.setText(text);
+    }
+
+    private void openFindField() {
+        String text = this.findField != null ? this.findField.getText() : "";
+        this.findField = new GuiTextField(1, this.fontRenderer, this.width - 160, 10, 150, 14);
+        this.findField.setFocused(true);
+        this.findField.setText(text);
+        this.findField.setCursorPositionEnd();
+        this.findField.setSelectionPos(0);
+    }
+
+    private void closeFindField() {
+        this.findField = null;
+        this.searchHits = null;
+        this.codeTextField.setSearchHits(null, 0);
+    }
+
+    /**
+     * Searches for the text of the find bar and jumps to the first hit in or after the first visible line.
+     */
+    private void updateSearch() {
+        if (this.searchIndex == null)
+            return;
+
+        //the index of a large file might still be built, the search is run once it's done
+        if (!this.searchIndex.isDone()) {
+            if (!this.searchPending) {
+                this.searchPending = true;
+                runWhenBuilt(this.searchIndex, () -> {
+                    this.searchPending = false;
+                    if (this.findField != null)
+                        updateSearch();
+                });
+            }
+            return;
+        }
+
+        //typing usually extends the query, in which case only the previous hits have to be checked. join() never
+        //blocks the client thread: the index is done, and it's only replaced by setJavaCode on this thread
+        this.searchHits = this.searchIndex.join().search(this.findField.getText(), this.searchHits);
+        this.currentSearchHit = this.searchHits.getFirstHitFromLine(scrollbar.getOffset());
+        if (this.currentSearchHit == this.searchHits.size())
+            this.currentSearchHit = 0;
+
+        this.codeTextField.setSearchHits(this.searchHits, this.currentSearchHit);
+        if (this.searchHits.size() > 0)
+            jumpToSearchHit(this.currentSearchHit);
+    }
+
+    /**
+     * Scrolls to the given search hit if it's not visible. Wraps around at both ends.
+     */
+    private void jumpToSearchHit(int hit) {
+        if (this.searchHits == null || this.searchHits.size() == 0)
+            return;
+
+        hit = Math.floorMod(hit, this.searchHits.size());
+        this.currentSearchHit = hit;
+        this.codeTextField.setSearchHits(this.searchHits, hit);
+
+        int line = this.searchHits.getLine(hit);
+        int visibleRows = this.codeTextField.getVisibleRows(scale);
+        if (line < scrollbar.getOffset() || line >= scrollbar.getOffset() + visibleRows - 1)
+            scrollbar.setOffset(line - visibleRows / 3);
+
+        int column = this.searchHits.getColumn(hit);
+        int visibleColumns = this.codeTextField.getVisibleColumns(scale);
+        if (column < horizontalScrollbar.getOffset() ||
+            column + this.searchHits.getLength() > horizontalScrollbar.getOffset() + visibleColumns)
+            horizontalScrollbar.setOffset(column - visibleColumns / 4);
+    }
+
+    /**
+     * Jumps to the given line number or to the next member matching the given name.
+     */
+    private void goTo(String target) {
+        if (target.isEmpty() || this.codeTextField.getLines() == null)
+            return;
+
+        try {
+            jumpToLine(Integer.parseInt(target));
+            this.goToField = null;
+            return;
+        } catch (NumberFormatException ignored) {
+        }
+
+        if (!this.memberLineIndex.isDone()) {
+            runWhenBuilt(this.memberLineIndex, () -> goTo(target));
+            return;
+        }
+
+        //the field stays open, so that pressing enter again jumps to the next match. join() never blocks, see
+        //updateSearch
+        int line = this.memberLineIndex.join().find(target, scrollbar.getOffset());
+        if (line != -1)
+            jumpToLine(line + 1);
+    }
+
+    /**
+     * Runs the given task on the client thread once the given index is built, unless other code was set in the
+     * meantime
+     */
+    private void runWhenBuilt(CompletableFuture<?> index, Runnable task) {
+        HighlightedLines lines = this.codeTextField.getLines();
+        index.thenRun(() -> Minecraft.getMinecraft().addScheduledTask(() -> {
+            if (this.codeTextField.getLines() == lines)
+                task.run();
+        }));
+    }
+
     private void updateScrollbarParameters() {
         scrollbar.setMax(Math.max(0, this.codeTextField.getLines().size() - this.codeTextField.getVisibleRows(scale)));
+        horizontalScrollbar.setMax(Math.max(0, this.codeTextField.getLines().getRawLines().getMaxLineLength() -
+                                               this.codeTextField.getVisibleColumns(scale)));
     }
 
     public void setJavaCode(String str) {
-        this.codeTextField.setLines(CodeHighlighter.getHighlightedJavaCode(str));
+        //highlighted lazily while drawing, so even large files are shown instantly
+        LineStorage lines = new LineStorage(str);
+        this.codeTextField.setLines(new HighlightedLines(lines));
+        this.memberLineIndex = CompletableFuture.supplyAsync(() -> new MemberLineIndex(lines), INDEX_EXECUTOR);
+        this.searchIndex = CompletableFuture.supplyAsync(() -> new TextSearchIndex(lines), INDEX_EXECUTOR);
+        this.searchHits = null;
+        this.searchPending = false;
+        this.codeTextField.setSearchHits(null, 0);
+        if (this.findField != null)
+            updateSearch();
+        this.outline = false;
 
+        horizontalScrollbar.setOffset(0);
         updateScrollbarParameters();
     }
+
+    /**
+     * Shows the outline of a class until the full source is set using {@link #setJavaCode(String)}.
+     */
+    public void setOutline(String str) {
+        setOutline(str, "gui.total_debug.code_viewer.decompiling");
+    }
+
+    /**
+     * @param hintKey the translation key of the hint shown above the outline
+     */
+    public void setOutline(String str, String hintKey) {
+        setJavaCode(str);
+        this.outline = true;
+        this.outlineHint = hintKey;
+    }
+
+    public boolean isOutline() {
+        return outline;
+    }
+
+    /**
+     * @param line the line to scroll to, starting at 1
+     */
+    public void jumpToLine(int line) {
+        scrollbar.setOffset(line - 1);
+    }
 }
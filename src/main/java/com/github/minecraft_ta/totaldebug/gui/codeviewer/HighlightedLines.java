@@ -0,0 +1,165 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.companionApp.CodeHighlighter;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores the raw lines of a file and highlights them lazily on a background thread. Only the lines around the visible
+ * window are highlighted, lines which were not highlighted yet are returned as plain text.
+ */
+public class HighlightedLines {
+
+    /**
+     * amount of lines above and below the visible window which are highlighted as well
+     */
+    private static final int LOOKAHEAD = 50;
+    private static final int CHUNK_SIZE = 256;
+
+    private static final Histogram HIGHLIGHT_TIME = Metrics.histogram("highlighter.window");
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TotalDebug Highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LineStorage rawLines;
+    /**
+     * chunks of highlighted lines, chunks are only allocated once a line in them is highlighted
+     */
+    private final AtomicReferenceArray<String[]> highlightedChunks;
+
+    /**
+     * the highlighter state at the start of each line, only accessed from the highlighter thread
+     */
+    private final byte[] lineStates;
+    private int computedLineStates = 1;
+
+    /**
+     * incremented whenever lines were highlighted
+     */
+    private volatile int version;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile int requestedStart;
+    private volatile int requestedEnd;
+
+    public HighlightedLines(LineStorage rawLines) {
+        this.rawLines = rawLines;
+        this.highlightedChunks = new AtomicReferenceArray<>((rawLines.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        this.lineStates = new byte[rawLines.size() + 1];
+        this.lineStates[0] = CodeHighlighter.STATE_CODE;
+    }
+
+    /**
+     * @return the highlighted line if it was already highlighted; the raw line otherwise
+     */
+    public String getLine(int index) {
+        String line = getHighlightedLine(index);
+        return line != null ? line : this.rawLines.get(index);
+    }
+
+    private String getHighlightedLine(int index) {
+        String[] chunk = this.highlightedChunks.get(index / CHUNK_SIZE);
+        return chunk == null ? null : chunk[index % CHUNK_SIZE];
+    }
+
+    private void setHighlightedLine(int index, String line) {
+        String[] chunk = this.highlightedChunks.get(index / CHUNK_SIZE);
+        if (chunk == null) {
+            chunk = new String[CHUNK_SIZE];
+            this.highlightedChunks.set(index / CHUNK_SIZE, chunk);
+        }
+
+        chunk[index % CHUNK_SIZE] = line;
+    }
+
+    public LineStorage getRawLines() {
+        return this.rawLines;
+    }
+
+    public int size() {
+        return this.rawLines.size();
+    }
+
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Highlights the given range of lines and some lines around it in the background, if they aren't highlighted yet.
+     *
+     * @param end exclusive
+     */
+    public void request(int start, int end) {
+        start = Math.max(0, start - LOOKAHEAD);
+        end = Math.min(size(), end + LOOKAHEAD);
+        if (isHighlighted(start, end))
+            return;
+
+        this.requestedStart = start;
+        this.requestedEnd = end;
+        if (this.scheduled.compareAndSet(false, true))
+            EXECUTOR.execute(this::highlightRequestedLines);
+    }
+
+    private boolean isHighlighted(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (getHighlightedLine(i) == null)
+                return false;
+        }
+
+        return true;
+    }
+
+    private void highlightRequestedLines() {
+        try {
+            //the visible window might change while highlighting, so repeat until the latest request is done
+            int start, end;
+            do {
+                start = this.requestedStart;
+                end = this.requestedEnd;
+                long startTime = System.nanoTime();
+                highlight(start, end);
+                this.version++;
+                HIGHLIGHT_TIME.recordSince(startTime);
+            } while (start != this.requestedStart || end != this.requestedEnd);
+        } catch (Throwable t) {
+            TotalDebug.LOGGER.error("Unable to highlight code", t);
+        } finally {
+            this.scheduled.set(false);
+        }
+
+        //a request might have been made after the loop ended, but before the flag was reset
+        if (!isHighlighted(this.requestedStart, this.requestedEnd) && this.scheduled.compareAndSet(false, true))
+            EXECUTOR.execute(this::highlightRequestedLines);
+    }
+
+    private void highlight(int start, int end) {
+        //the state of a line depends on all lines before it, but computing it without output is cheap
+        while (this.computedLineStates <= start) {
+            int line = this.computedLineStates - 1;
+            this.lineStates[line + 1] = (byte) CodeHighlighter.highlightLine(this.rawLines.get(line), this.lineStates[line], null);
+            this.computedLineStates++;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            builder.setLength(0);
+            int state = CodeHighlighter.highlightLine(this.rawLines.get(i), this.lineStates[i], builder);
+            setHighlightedLine(i, builder.toString());
+
+            if (i + 1 == this.computedLineStates) {
+                this.lineStates[i + 1] = (byte) state;
+                this.computedLineStates++;
+            }
+        }
+    }
+}
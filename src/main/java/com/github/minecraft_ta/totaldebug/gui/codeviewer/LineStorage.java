@@ -0,0 +1,88 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Stores the lines of a file as the original string and the offsets at which the lines start, instead of one string
+ * per line. Line strings are only created when they're needed, which keeps even files with 100k+ lines small.
+ */
+public class LineStorage {
+
+    private final String code;
+    /**
+     * the start of each line and the end of the last line + 1
+     */
+    private final int[] lineStarts;
+    private final int size;
+    private final int maxLineLength;
+
+    public LineStorage(String code) {
+        this.code = code;
+
+        IntArrayList lineStarts = new IntArrayList();
+        lineStarts.add(0);
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n')
+                lineStarts.add(i + 1);
+        }
+        lineStarts.add(code.length() + 1);
+        this.lineStarts = lineStarts.toIntArray();
+
+        //same as String#split, trailing empty lines are removed
+        int size = this.lineStarts.length - 1;
+        while (size > 1 && getLineLength(size - 1) == 0)
+            size--;
+        this.size = size;
+
+        int maxLineLength = 0;
+        for (int i = 0; i < size; i++)
+            maxLineLength = Math.max(maxLineLength, getLineLength(i));
+        this.maxLineLength = maxLineLength;
+    }
+
+    public String get(int index) {
+        int start = this.lineStarts[index];
+        return this.code.substring(start, start + getLineLength(index));
+    }
+
+    /**
+     * @return the length of the given line, without line separators
+     */
+    public int getLineLength(int index) {
+        int start = this.lineStarts[index];
+        int end = this.lineStarts[index + 1] - 1;
+        if (end > start && this.code.charAt(end - 1) == '\r')
+            end--;
+
+        return end - start;
+    }
+
+    /**
+     * @return the offset of the first character of the given line in {@link #getCode()}
+     */
+    public int getLineStart(int index) {
+        return this.lineStarts[index];
+    }
+
+    /**
+     * @return the line containing the given offset in {@link #getCode()}
+     */
+    public int getLineOfOffset(int offset) {
+        int index = Arrays.binarySearch(this.lineStarts, offset);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    public String getCode() {
+        return this.code;
+    }
+
+    public int getMaxLineLength() {
+        return this.maxLineLength;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the lines at which types, methods and fields are declared. The decompiler and the outline indent every
+ * nested level by four spaces, so declarations are found by their indentation relative to their declaring type, which
+ * avoids parsing the code.
+ */
+public class MemberLineIndex {
+
+    private static final int INDENT = 4;
+    private static final Pattern TYPE_PATTERN = Pattern.compile("^(?:\\w+\\s+)*(?:class|interface|enum|@interface)\\s+([\\w$]+)");
+    private static final Pattern METHOD_PATTERN = Pattern.compile("([\\w$]+)\\s*\\(");
+    private static final Pattern FIELD_PATTERN = Pattern.compile("([\\w$]+)\\s*(?:=|;|,|$)");
+
+    private final List<String> names = new ArrayList<>();
+    private final IntArrayList lines = new IntArrayList();
+
+    public MemberLineIndex(@Nonnull LineStorage storage) {
+        IntArrayList typeIndents = new IntArrayList();
+
+        for (int i = 0; i < storage.size(); i++) {
+            String line = storage.get(i);
+            int indent = 0;
+            while (indent < line.length() && line.charAt(indent) == ' ')
+                indent++;
+            if (indent == line.length())
+                continue;
+
+            //the opening brace of a type body is on its own line
+            String declaration = line.substring(indent);
+            if (declaration.startsWith("{"))
+                continue;
+
+            //leaving a type
+            while (!typeIndents.isEmpty() && indent <= typeIndents.getInt(typeIndents.size() - 1))
+                typeIndents.removeInt(typeIndents.size() - 1);
+
+            Matcher typeMatcher = TYPE_PATTERN.matcher(declaration);
+            if (typeMatcher.find() && (typeIndents.isEmpty() || indent == typeIndents.getInt(typeIndents.size() - 1) + INDENT)) {
+                typeIndents.add(indent);
+                add(typeMatcher.group(1), i);
+                continue;
+            }
+
+            //only direct members of a type, everything indented deeper is part of a method body
+            if (typeIndents.isEmpty() || indent != typeIndents.getInt(typeIndents.size() - 1) + INDENT ||
+                declaration.startsWith("@") || declaration.startsWith("}") || declaration.startsWith("/") || declaration.startsWith("*"))
+                continue;
+
+            int parenthesis = declaration.indexOf('(');
+            int assignment = declaration.indexOf('=');
+            Matcher matcher = parenthesis != -1 && (assignment == -1 || parenthesis < assignment) ?
+                    METHOD_PATTERN.matcher(declaration) :
+                    FIELD_PATTERN.matcher(declaration);
+            if (matcher.find())
+                add(matcher.group(1), i);
+        }
+    }
+
+    private void add(String name, int line) {
+        this.names.add(name);
+        this.lines.add(line);
+    }
+
+    /**
+     * Finds the next member matching the given query. Exact matches are preferred over members starting with the
+     * query, which are preferred over members containing the query. The search wraps around at the end of the file.
+     *
+     * @param query     the name to search for, case insensitive
+     * @param afterLine only members declared after this line are returned, unless there are none
+     * @return the line of the found member, starting at 0; {@code -1} if no member matches
+     */
+    public int find(@Nonnull String query, int afterLine) {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        for (int quality = 0; quality < 3; quality++) {
+            int first = -1;
+            for (int i = 0; i < this.names.size(); i++) {
+                String name = this.names.get(i).toLowerCase(Locale.ROOT);
+                boolean matches = quality == 0 ? name.equals(lowerCaseQuery) :
+                        quality == 1 ? name.startsWith(lowerCaseQuery) : name.contains(lowerCaseQuery);
+                if (!matches)
+                    continue;
+
+                int line = this.lines.getInt(i);
+                if (line > afterLine)
+                    return line;
+                if (first == -1)
+                    first = line;
+            }
+
+            if (first != -1)
+                return first;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Case insensitive text search over the lines of a file. The lower case copy of the file is built once, searches then
+ * only have to scan it. Hits are kept sorted by their position, so jumping between them is constant time.
+ */
+public class TextSearchIndex {
+
+    private final LineStorage lines;
+    private final String lowerCaseCode;
+
+    public TextSearchIndex(@Nonnull LineStorage lines) {
+        this.lines = lines;
+
+        //converted char by char, so that offsets stay the same as in the original code
+        String code = lines.getCode();
+        char[] chars = new char[code.length()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(code.charAt(i));
+        this.lowerCaseCode = new String(chars);
+    }
+
+    /**
+     * @param previous the hits of the previous search; if the new query starts with the previous query, only these hits
+     *                 have to be checked
+     */
+    @Nonnull
+    public Hits search(@Nonnull String query, @Nullable Hits previous) {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        IntArrayList matches = new IntArrayList();
+        if (lowerCaseQuery.isEmpty())
+            return new Hits(matches.toIntArray(), matches.toIntArray(), lowerCaseQuery);
+
+        //every match of the new query is also a match of the previous query, as long as overlapping matches are kept
+        if (previous != null && !previous.query.isEmpty() && lowerCaseQuery.startsWith(previous.query)) {
+            for (int offset : previous.matches) {
+                if (this.lowerCaseCode.startsWith(lowerCaseQuery, offset))
+                    matches.add(offset);
+            }
+        } else {
+            int offset = this.lowerCaseCode.indexOf(lowerCaseQuery);
+            while (offset != -1) {
+                matches.add(offset);
+                offset = this.lowerCaseCode.indexOf(lowerCaseQuery, offset + 1);
+            }
+        }
+
+        //only non overlapping matches are shown as hits
+        IntArrayList offsets = new IntArrayList(matches.size());
+        int end = 0;
+        for (int i = 0; i < matches.size(); i++) {
+            int offset = matches.getInt(i);
+            if (offset < end)
+                continue;
+
+            offsets.add(offset);
+            end = offset + lowerCaseQuery.length();
+        }
+
+        return new Hits(offsets.toIntArray(), matches.toIntArray(), lowerCaseQuery);
+    }
+
+    public final class Hits {
+
+        private final int[] offsets;
+        /**
+         * all matches including overlapping ones, used to narrow down the next search
+         */
+        private final int[] matches;
+        private final String query;
+
+        private Hits(int[] offsets, int[] matches, String query) {
+            this.offsets = offsets;
+            this.matches = matches;
+            this.query = query;
+        }
+
+        public int size() {
+            return this.offsets.length;
+        }
+
+        /**
+         * @return the length of every hit
+         */
+        public int getLength() {
+            return this.query.length();
+        }
+
+        public int getLine(int hit) {
+            return lines.getLineOfOffset(this.offsets[hit]);
+        }
+
+        public int getColumn(int hit) {
+            return this.offsets[hit] - lines.getLineStart(getLine(hit));
+        }
+
+        /**
+         * @return the index of the first hit in or after the given line; {@link #size()} if there is none
+         */
+        public int getFirstHitFromLine(int line) {
+            if (line >= lines.size())
+                return size();
+
+            int index = Arrays.binarySearch(this.offsets, lines.getLineStart(line));
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.minecraft_ta.totaldebug.handler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import net.minecraft.client.Minecraft;
+import net.minecraft.item.Item;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.RayTraceResult;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Watches what the player is looking at or hovering over and queues the corresponding classes for background
+ * decompilation, so that they're usually already decompiled once the code gui key is pressed.
+ */
+public class DecompilationPrefetchHandler {
+
+    private static final int CHECK_INTERVAL_TICKS = 5;
+
+    private int ticks;
+
+    /**
+     * the last looked at or hovered object; only prefetched again once it changes
+     */
+    private Object lastTarget;
+
+    @SubscribeEvent
+    public void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || !TotalDebug.PROXY.getClientConfig().prefetchDecompilation)
+            return;
+
+        if (++ticks < CHECK_INTERVAL_TICKS)
+            return;
+        ticks = 0;
+
+        Minecraft mc = Minecraft.getMinecraft();
+        if (mc.world == null || mc.player == null)
+            return;
+
+        if (mc.currentScreen != null) {
+            Item item = KeyInputHandler.getHoveredItem();
+            if (item != null && item != lastTarget) {
+                lastTarget = item;
+                //same class as the key press opens, item blocks resolve to their tile entity if they have one
+                prefetch(KeyInputHandler.getClassForHit(KeyInputHandler.HitType.ITEM, null, Item.REGISTRY.getIDForObject(item)));
+            }
+            return;
+        }
+
+        RayTraceResult rayTraceResult = mc.objectMouseOver;
+        if (rayTraceResult == null)
+            return;
+
+        switch (rayTraceResult.typeOfHit) {
+            case BLOCK:
+                BlockPos blockPos = rayTraceResult.getBlockPos();
+                if (blockPos.equals(lastTarget))
+                    return;
+                lastTarget = blockPos;
+
+                KeyInputHandler.HitType hitType = KeyInputHandler.getBlockHitType(blockPos);
+                if (hitType != null)
+                    prefetch(KeyInputHandler.getClassForHit(hitType, blockPos, 0));
+                break;
+            case ENTITY:
+                if (rayTraceResult.entityHit == lastTarget)
+                    return;
+                lastTarget = rayTraceResult.entityHit;
+
+                prefetch(rayTraceResult.entityHit.getClass());
+                break;
+        }
+    }
+
+    private void prefetch(Class<?> clazz) {
+        if (clazz != null)
+            TotalDebug.PROXY.getDecompilationManager().prefetch(clazz);
+    }
+}
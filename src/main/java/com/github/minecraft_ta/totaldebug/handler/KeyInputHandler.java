@@ -23,6 +23,8 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.InputEvent;
 import org.lwjgl.input.Keyboard;
 
+import javax.annotation.Nullable;
+
 public class KeyInputHandler {
 
     private long lastRequested;
@@ -39,45 +41,48 @@ public class KeyInputHandler {
         if (!Keyboard.isKeyDown(KeyBindings.CODE_GUI.getKeyCode()))
             return;
 
+        Item item = getHoveredItem();
+        if (item != null)
+            handle(HitType.ITEM, null, Item.REGISTRY.getIDForObject(item));
+    }
+
+    /**
+     * @return the item of the JEI ingredient or container slot under the mouse; {@code null} if there's none
+     */
+    @Nullable
+    public static Item getHoveredItem() {
         GuiScreen currentScreen = Minecraft.getMinecraft().currentScreen;
-        if (currentScreen instanceof GuiContainer) {
-            if (TotalDebugJEIPlugin.INSTANCE != null) {
-                IJeiRuntime runtime = TotalDebugJEIPlugin.INSTANCE.getRuntime();
-
-                Object ingredientUnderMouse = runtime.getIngredientListOverlay().getIngredientUnderMouse();
-                if (ingredientUnderMouse == null)
-                    ingredientUnderMouse = runtime.getBookmarkOverlay().getIngredientUnderMouse();
-
-                if (ingredientUnderMouse instanceof ItemStack) {
-                    Item item = ((ItemStack) ingredientUnderMouse).getItem();
-                    handle(HitType.ITEM, null, Item.getIdFromItem(item));
-                    return;
-                }
-            }
-
-            GuiContainer guiContainer = (GuiContainer) currentScreen;
-            Slot slot = guiContainer.getSlotUnderMouse();
-            if (slot != null && slot.getHasStack()) {
-                Item item = guiContainer.getSlotUnderMouse().getStack().getItem();
-                handle(HitType.ITEM, null, Item.REGISTRY.getIDForObject(item));
-            }
+        if (!(currentScreen instanceof GuiContainer))
+            return null;
+
+        if (TotalDebugJEIPlugin.INSTANCE != null && TotalDebugJEIPlugin.INSTANCE.getRuntime() != null) {
+            IJeiRuntime runtime = TotalDebugJEIPlugin.INSTANCE.getRuntime();
+
+            Object ingredientUnderMouse = runtime.getIngredientListOverlay().getIngredientUnderMouse();
+            if (ingredientUnderMouse == null)
+                ingredientUnderMouse = runtime.getBookmarkOverlay().getIngredientUnderMouse();
+
+            if (ingredientUnderMouse instanceof ItemStack)
+                return ((ItemStack) ingredientUnderMouse).getItem();
         }
+
+        Slot slot = ((GuiContainer) currentScreen).getSlotUnderMouse();
+        if (slot != null && slot.getHasStack())
+            return slot.getStack().getItem();
+
+        return null;
     }
 
     public void rayTraceEyes() {
         RayTraceResult rayTraceResult = Minecraft.getMinecraft().objectMouseOver;
-        WorldClient world = Minecraft.getMinecraft().world;
+        if (rayTraceResult == null)
+            return;
 
         switch (rayTraceResult.typeOfHit) {
             case BLOCK:
-                BlockPos blockPos = rayTraceResult.getBlockPos();
-                if (!world.isAirBlock(blockPos)) {
-                    if (world.getTileEntity(blockPos) == null) {
-                        handle(HitType.BLOCK_ENTITY, blockPos, 0);
-                    } else {
-                        handle(HitType.TILE_ENTITY, blockPos, 0);
-                    }
-                }
+                HitType blockHitType = getBlockHitType(rayTraceResult.getBlockPos());
+                if (blockHitType != null)
+                    handle(blockHitType, rayTraceResult.getBlockPos(), 0);
                 break;
             case ENTITY:
                 handle(HitType.LIVING_ENTITY, null, rayTraceResult.entityHit.getEntityId());
@@ -85,51 +90,72 @@ public class KeyInputHandler {
         }
     }
 
+    /**
+     * @return the type of the block at the given position; {@code null} if it's air
+     */
+    @Nullable
+    public static HitType getBlockHitType(BlockPos blockPos) {
+        WorldClient world = Minecraft.getMinecraft().world;
+        if (world.isAirBlock(blockPos))
+            return null;
+
+        return world.getTileEntity(blockPos) == null ? HitType.BLOCK_ENTITY : HitType.TILE_ENTITY;
+    }
+
     public void handle(HitType typeOfHit, BlockPos pos, int entityOrItemId) {
         if (System.currentTimeMillis() - lastRequested < 500)
             return;
         lastRequested = System.currentTimeMillis();
 
+        Class<?> clazz = getClassForHit(typeOfHit, pos, entityOrItemId);
+        if (clazz != null)
+            TotalDebug.PROXY.getDecompilationManager().openGui(clazz);
+    }
+
+    /**
+     * @return the class of the block, tile entity, entity or item that was hit; {@code null} if it doesn't exist
+     */
+    @Nullable
+    public static Class<?> getClassForHit(HitType typeOfHit, BlockPos pos, int entityOrItemId) {
         World world = Minecraft.getMinecraft().world;
 
         switch (typeOfHit) {
             case BLOCK_ENTITY:
-                TotalDebug.PROXY.getDecompilationManager().openGui(world.getBlockState(pos).getBlock().getClass());
-                break;
+                return world.getBlockState(pos).getBlock().getClass();
             case TILE_ENTITY:
                 TileEntity tileEntity = world.getTileEntity(pos);
-                if (tileEntity != null) {
-                    TotalDebug.PROXY.getDecompilationManager().openGui(tileEntity.getClass());
-                } else {
-                    TotalDebug.LOGGER.error("TileEntity is null");
-                }
-                break;
+                if (tileEntity != null)
+                    return tileEntity.getClass();
+
+                TotalDebug.LOGGER.error("TileEntity is null");
+                return null;
             case LIVING_ENTITY:
                 Entity entity = world.getEntityByID(entityOrItemId);
-                if (entity != null) {
-                    TotalDebug.PROXY.getDecompilationManager().openGui(entity.getClass());
-                } else {
-                    TotalDebug.LOGGER.error("Entity is null");
-                }
-                break;
+                if (entity != null)
+                    return entity.getClass();
+
+                TotalDebug.LOGGER.error("Entity is null");
+                return null;
             case ITEM:
                 Item item = Item.REGISTRY.getObjectById(entityOrItemId);
-                if (item != null) {
-                    if (item instanceof ItemBlock) {
-                        Block block = ((ItemBlock) item).getBlock();
-                        TileEntity tile = block.createTileEntity(world, block.getDefaultState());
-                        if (tile != null) {
-                            TotalDebug.PROXY.getDecompilationManager().openGui(tile.getClass());
-                            return;
-                        }
-                        TotalDebug.PROXY.getDecompilationManager().openGui(block.getClass());
-                    } else {
-                        TotalDebug.PROXY.getDecompilationManager().openGui(item.getClass());
-                    }
-                } else {
+                if (item == null) {
                     TotalDebug.LOGGER.error("Item is null");
+                    return null;
                 }
+
+                if (item instanceof ItemBlock) {
+                    Block block = ((ItemBlock) item).getBlock();
+                    TileEntity tile = block.createTileEntity(world, block.getDefaultState());
+                    if (tile != null)
+                        return tile.getClass();
+
+                    return block.getClass();
+                }
+
+                return item.getClass();
         }
+
+        return null;
     }
 
     public enum HitType {
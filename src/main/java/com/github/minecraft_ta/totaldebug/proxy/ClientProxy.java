@@ -5,12 +5,16 @@ import com.github.minecraft_ta.totaldebug.KeyBindings;
 import com.github.minecraft_ta.totaldebug.block.tile.TickBlockTile;
 import com.github.minecraft_ta.totaldebug.command.decompile.DecompileCommand;
 import com.github.minecraft_ta.totaldebug.command.searchreference.SearchReferenceCommand;
+import com.github.minecraft_ta.totaldebug.command.totaldebug.TotalDebugCommand;
 import com.github.minecraft_ta.totaldebug.config.TotalDebugClientConfig;
+import com.github.minecraft_ta.totaldebug.handler.DecompilationPrefetchHandler;
 import com.github.minecraft_ta.totaldebug.handler.KeyInputHandler;
 import com.github.minecraft_ta.totaldebug.handler.TabOverlayRenderHandler;
 import com.github.minecraft_ta.totaldebug.render.TickBlockTileRenderer;
 import com.github.minecraft_ta.totaldebug.companionApp.CompanionApp;
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassCaptureTransformer;
 import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
 import net.minecraftforge.client.ClientCommandHandler;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.config.Configuration;
@@ -28,6 +32,10 @@ public class ClientProxy extends CommonProxy {
     public void preInit(FMLPreInitializationEvent e) {
         super.preInit(e);
         this.clientConfig.load(new Configuration(e.getSuggestedConfigurationFile()));
+        Metrics.setLogInterval(this.clientConfig.metricsLogInterval);
+
+        if (this.clientConfig.captureTransformedClasses)
+            ClassCaptureTransformer.register();
     }
 
     @Override
@@ -39,12 +47,14 @@ public class ClientProxy extends CommonProxy {
         RemappingUtil.loadMappings();
 
         MinecraftForge.EVENT_BUS.register(new KeyInputHandler());
+        MinecraftForge.EVENT_BUS.register(new DecompilationPrefetchHandler());
         MinecraftForge.EVENT_BUS.register(new TabOverlayRenderHandler());
 
         ClientRegistry.bindTileEntitySpecialRenderer(TickBlockTile.class, new TickBlockTileRenderer());
 
         ClientCommandHandler.instance.registerCommand(new DecompileCommand());
         ClientCommandHandler.instance.registerCommand(new SearchReferenceCommand());
+        ClientCommandHandler.instance.registerCommand(new TotalDebugCommand());
 
         KeyBindings.init();
     }
@@ -1,56 +1,372 @@
 package com.github.minecraft_ta.totaldebug.util;
 
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassOutlineWriter;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationResult;
+import com.github.minecraft_ta.totaldebug.util.decompiler.DecompilationWatchdog;
+import com.github.minecraft_ta.totaldebug.util.decompiler.LineNumberMapping;
+import com.github.minecraft_ta.totaldebug.util.decompiler.NavigationMap;
 import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.FieldDefinition;
+import com.strobel.assembler.metadata.FieldReference;
 import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MemberReference;
 import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.MethodReference;
+import com.strobel.assembler.metadata.ParameterReference;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.assembler.metadata.VariableReference;
 import com.strobel.decompiler.DecompilationOptions;
 import com.strobel.decompiler.DecompilerSettings;
 import com.strobel.decompiler.PlainTextOutput;
+import com.strobel.decompiler.ast.Variable;
+import com.strobel.decompiler.languages.LineNumberPosition;
+import com.strobel.decompiler.languages.TypeDecompilationResults;
 import com.strobel.decompiler.languages.java.JavaFormattingOptions;
 import org.objectweb.asm.ClassWriter;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ProcyonDecompiler {
 
-    public static String decompile(String name) {
-        ITypeLoader loader = (internalName, buffer) -> {
-            if (internalName.endsWith(".class"))
-                internalName = internalName.substring(0, internalName.length() - 6);
+    /**
+     * Has to be incremented whenever the decompiler settings or the Procyon version change, so that cached
+     * decompilations are invalidated
+     */
+    public static final int SETTINGS_VERSION = 1;
 
-            try {
-                ClassWriter writer = RemappingUtil.getRemappedClass(Class.forName(internalName), new RemappingUtil.RemappingContext());
-                if (writer == null)
-                    return false;
+    /**
+     * Incremented whenever the cached types become outdated, e.g. because the mappings were reloaded
+     */
+    private static final AtomicInteger TYPE_CACHE_GENERATION = new AtomicInteger();
 
-                byte[] code = writer.toByteArray();
-                if (code == null)
-                    return false;
+    /**
+     * Procyon's type system is not thread safe, so every decompilation thread keeps its own warm
+     * {@link MetadataSystem}
+     */
+    private static final ThreadLocal<DecompilerContext> CONTEXT = ThreadLocal.withInitial(DecompilerContext::new);
+    /**
+     * the amount of types a context may load before it's discarded. Every thread holds its own copy of all types it
+     * ever loaded, so without a limit bulk decompilations would keep most of the game in memory several times.
+     */
+    private static final int MAX_LOADED_TYPES = 2000;
 
-                buffer.position(0);
-                buffer.putByteArray(code, 0, code.length);
-                buffer.position(0);
-                return true;
-            } catch (ClassNotFoundException e) {
+    /**
+     * includes the time spent loading and remapping referenced types
+     */
+    private static final Histogram DECOMPILE_TIME = Metrics.histogram("procyon.decompile");
+    private static final Histogram DECOMPILE_METHODS_TIME = Metrics.histogram("procyon.decompile_methods");
+    private static final Histogram REMAP_TIME = Metrics.histogram("procyon.remap");
+
+    public static DecompilationResult decompile(String name) {
+        DecompilerContext context = getContext();
+
+        long startTime = System.nanoTime();
+        StringWriter writer = new CancellableWriter();
+        NavigationTextOutput output = new NavigationTextOutput(writer);
+        TypeDecompilationResults results;
+        try {
+            results = context.settings.getLanguage().decompileType(
+                    context.system.lookupType(name).resolve(), output, context.options
+            );
+        } catch (Throwable t) {
+            //the type system might be in an inconsistent state after an aborted decompilation
+            context.reset();
+            throw t;
+        }
+        DECOMPILE_TIME.recordSince(startTime);
+
+        List<LineNumberPosition> positions = results.getLineNumberPositions() != null ?
+                results.getLineNumberPositions() :
+                Collections.emptyList();
+        int[] originalLines = new int[positions.size()];
+        int[] decompiledLines = new int[positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            originalLines[i] = positions.get(i).getOriginalLine();
+            decompiledLines[i] = positions.get(i).getEmittedLine();
+        }
+
+        String source = writer.toString();
+        return new DecompilationResult(source, LineNumberMapping.of(originalLines, decompiledLines), output.navigationMap.build(source));
+    }
+
+    /**
+     * Decompiles only the given methods of a class, surrounded by the header of the class. Line numbers are not
+     * available for single methods, so the returned mapping is always empty.
+     *
+     * @param methodNames the names of the methods to decompile; all overloads are included
+     */
+    public static DecompilationResult decompileMethods(String name, Set<String> methodNames) {
+        DecompilerContext context = getContext();
+
+        long startTime = System.nanoTime();
+        TypeDefinition type = context.system.lookupType(name).resolve();
+        if (type == null)
+            throw new IllegalArgumentException("Type " + name + " not found");
+
+        StringWriter writer = new CancellableWriter();
+        NavigationTextOutput output = new NavigationTextOutput(writer);
+
+        if (!type.getPackageName().isEmpty())
+            output.writeLine("package " + type.getPackageName() + ";");
+        output.writeLine();
+        output.writeLine("// only the methods " + String.join(", ", methodNames) + " were decompiled");
+        //the same header as in the outline, so both views of a class look alike
+        String header = ClassOutlineWriter.getHeader(name);
+        output.writeLine((header != null ? header : "class " + type.getSimpleName()) + " {");
+        output.indent();
+
+        boolean first = true;
+        try {
+            for (MethodDefinition method : type.getDeclaredMethods()) {
+                if (!methodNames.contains(method.getName()))
+                    continue;
+
+                if (!first)
+                    output.writeLine();
+                first = false;
+
+                context.settings.getLanguage().decompileMethod(method, output, context.options);
+            }
+        } catch (Throwable t) {
+            context.reset();
+            throw t;
+        }
+
+        output.unindent();
+        output.writeLine("}");
+        DECOMPILE_METHODS_TIME.recordSince(startTime);
+
+        String source = writer.toString();
+        return new DecompilationResult(source, LineNumberMapping.EMPTY, output.navigationMap.build(source));
+    }
+
+    /**
+     * @return the context of the current thread, reset if its types are outdated or if it loaded too many types
+     */
+    private static DecompilerContext getContext() {
+        DecompilerContext context = CONTEXT.get();
+        if (context.generation != TYPE_CACHE_GENERATION.get() || context.loadedTypes > MAX_LOADED_TYPES)
+            context.reset();
+
+        return context;
+    }
+
+    /**
+     * Discards all cached types. Has to be called when the mappings or the bytecode of loaded classes change.
+     */
+    public static void invalidateTypeCache() {
+        TYPE_CACHE_GENERATION.incrementAndGet();
+    }
+
+    private static boolean loadType(String internalName, Buffer buffer) {
+        DecompilationWatchdog.checkCancelled();
+
+        if (internalName.endsWith(".class"))
+            internalName = internalName.substring(0, internalName.length() - 6);
+
+        try {
+            //don't initialize referenced classes just to decompile them
+            Class<?> clazz = Class.forName(internalName.replace('/', '.'), false, ProcyonDecompiler.class.getClassLoader());
+            long startTime = System.nanoTime();
+            ClassWriter writer = RemappingUtil.getRemappedClass(clazz, new RemappingUtil.RemappingContext());
+            if (writer == null)
+                return false;
+
+            byte[] code = writer.toByteArray();
+            REMAP_TIME.recordSince(startTime);
+            if (code == null)
                 return false;
+
+            buffer.position(0);
+            buffer.putByteArray(code, 0, code.length);
+            buffer.position(0);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks for cancellation whenever the decompiler writes output
+     */
+    private static final class CancellableWriter extends StringWriter {
+
+        @Override
+        public void write(int c) {
+            DecompilationWatchdog.checkCancelled();
+            super.write(c);
+        }
+
+        @Override
+        public void write(@Nonnull char[] cbuf, int off, int len) {
+            DecompilationWatchdog.checkCancelled();
+            super.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(@Nonnull String str) {
+            DecompilationWatchdog.checkCancelled();
+            super.write(str);
+        }
+
+        @Override
+        public void write(@Nonnull String str, int off, int len) {
+            DecompilationWatchdog.checkCancelled();
+            super.write(str, off, len);
+        }
+    }
+
+    /**
+     * Records the references and declarations written by the decompiler into a {@link NavigationMap}
+     */
+    private static final class NavigationTextOutput extends PlainTextOutput {
+
+        private final StringWriter writer;
+        private final NavigationMap.Builder navigationMap = new NavigationMap.Builder();
+
+        private NavigationTextOutput(StringWriter writer) {
+            super(writer);
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeReference(String text, Object reference) {
+            writeReference(text, reference, false);
+        }
+
+        @Override
+        public void writeReference(String text, Object reference, boolean isLocal) {
+            super.writeReference(text, reference, isLocal);
+
+            //local variables and parameters navigate to their type
+            if (reference instanceof Variable)
+                reference = ((Variable) reference).getType();
+            else if (reference instanceof VariableReference)
+                reference = ((VariableReference) reference).getVariableType();
+            else if (reference instanceof ParameterReference)
+                reference = ((ParameterReference) reference).getParameterType();
+
+            String member = "";
+            TypeReference type;
+            if (reference instanceof TypeReference) {
+                type = (TypeReference) reference;
+            } else if (reference instanceof MethodReference || reference instanceof FieldReference) {
+                //resolving finds the class which actually declares the member, e.g. a super class
+                MemberReference memberReference = (MemberReference) reference;
+                MemberReference resolved = reference instanceof MethodReference ?
+                        ((MethodReference) reference).resolve() :
+                        ((FieldReference) reference).resolve();
+                if (resolved != null)
+                    memberReference = resolved;
+
+                type = memberReference.getDeclaringType();
+                member = getMember(memberReference);
+            } else {
+                return;
+            }
+
+            String className = getClassName(type);
+            if (className != null)
+                this.navigationMap.addReference(getEndOffset() - text.length(), text.length(), className, member);
+        }
+
+        @Override
+        public void writeDefinition(String text, Object definition) {
+            writeDefinition(text, definition, true);
+        }
+
+        @Override
+        public void writeDefinition(String text, Object definition, boolean isLocal) {
+            super.writeDefinition(text, definition, isLocal);
+
+            String className;
+            String member;
+            if (definition instanceof TypeDefinition) {
+                className = getClassName((TypeDefinition) definition);
+                member = "";
+            } else if (definition instanceof MethodDefinition || definition instanceof FieldDefinition) {
+                className = getClassName(((MemberReference) definition).getDeclaringType());
+                member = getMember((MemberReference) definition);
+            } else {
+                return;
             }
-        };
 
-        DecompilerSettings settings = new DecompilerSettings();
-        settings.setUnicodeOutputEnabled(false);
-        settings.setShowSyntheticMembers(true);
-        settings.setTypeLoader(loader);
-        settings.setJavaFormattingOptions(JavaFormattingOptions.createDefault());
+            if (className != null)
+                this.navigationMap.addDeclaration(getEndOffset() - text.length(), className, member);
+        }
+
+        private int getEndOffset() {
+            return this.writer.getBuffer().length();
+        }
+
+        private static String getMember(MemberReference member) {
+            return member instanceof MethodReference ?
+                    member.getName() + ((MethodReference) member).getErasedSignature() :
+                    member.getName();
+        }
+
+        /**
+         * @return the binary name of the given type; {@code null} if it's a primitive or generic type
+         */
+        @Nullable
+        private static String getClassName(@Nullable TypeReference type) {
+            while (type != null && type.isArray())
+                type = type.getElementType();
+            if (type == null || type.isPrimitive() || type.isGenericParameter() || type.isWildcardType())
+                return null;
+
+            return type.getInternalName().replace('/', '.');
+        }
+    }
+
+    private static final class DecompilerContext {
+
+        private int generation;
+        private int loadedTypes;
+
+        private DecompilerSettings settings;
+        private DecompilationOptions options;
+        private MetadataSystem system;
+
+        private DecompilerContext() {
+            reset();
+        }
+
+        private void reset() {
+            this.generation = TYPE_CACHE_GENERATION.get();
+            this.loadedTypes = 0;
+
+            ITypeLoader loader = (internalName, buffer) -> {
+                if (!loadType(internalName, buffer))
+                    return false;
+
+                this.loadedTypes++;
+                return true;
+            };
 
-        MetadataSystem system = new MetadataSystem(loader);
-        system.setEagerMethodLoadingEnabled(true);
+            this.settings = new DecompilerSettings();
+            this.settings.setUnicodeOutputEnabled(false);
+            this.settings.setShowSyntheticMembers(true);
+            this.settings.setTypeLoader(loader);
+            this.settings.setJavaFormattingOptions(JavaFormattingOptions.createDefault());
 
-        DecompilationOptions decompilationOptions = new DecompilationOptions();
-        decompilationOptions.setSettings(settings);
-        decompilationOptions.setFullDecompilation(true);
+            this.system = new MetadataSystem(loader);
+            this.system.setEagerMethodLoadingEnabled(true);
 
-        StringWriter writer = new StringWriter();
-        settings.getLanguage().decompileType(system.lookupType(name).resolve(), new PlainTextOutput(writer), decompilationOptions);
-        return writer.toString();
+            this.options = new DecompilationOptions();
+            this.options.setSettings(this.settings);
+            this.options.setFullDecompilation(true);
+        }
     }
 }
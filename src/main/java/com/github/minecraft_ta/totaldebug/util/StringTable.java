@@ -0,0 +1,52 @@
+package com.github.minecraft_ta.totaldebug.util;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assigns a unique, dense int id to every distinct string added to it. Not thread-safe, parallel workers use their own
+ * table and merge them afterwards.
+ */
+public class StringTable {
+
+    private final Object2IntMap<String> ids = new Object2IntOpenHashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    {
+        ids.defaultReturnValue(-1);
+    }
+
+    /**
+     * @return the id of the given string; a new id is assigned if the string is not yet part of this table
+     */
+    public int intern(@Nonnull String str) {
+        int id = this.ids.getInt(str);
+        if (id != -1)
+            return id;
+
+        id = this.strings.size();
+        this.strings.add(str);
+        this.ids.put(str, id);
+        return id;
+    }
+
+    /**
+     * @return the id of the given string; {@code -1} if the string is not part of this table
+     */
+    public int getId(@Nonnull String str) {
+        return this.ids.getInt(str);
+    }
+
+    @Nonnull
+    public String get(int id) {
+        return this.strings.get(id);
+    }
+
+    public int size() {
+        return this.strings.size();
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.minecraft_ta.totaldebug.util.bytecode;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Holds the final (post-transformer) bytecode of every class that was loaded while the
+ * {@link ClassCaptureTransformer} was registered. Entries are deflated to keep the memory footprint small.
+ */
+public class ClassBytesCache {
+
+    /**
+     * transformed class name -> compressed bytecode
+     */
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong RAW_SIZE = new AtomicLong();
+    private static final AtomicLong COMPRESSED_SIZE = new AtomicLong();
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private ClassBytesCache() {
+    }
+
+    /**
+     * @param className the binary name of the class, e.g. {@code net.minecraft.world.World}
+     * @param bytecode  the bytecode as it was handed to the JVM
+     */
+    public static void put(@Nonnull String className, @Nonnull byte[] bytecode) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(bytecode);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, bytecode.length / 2)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        Entry old = ENTRIES.put(className, new Entry(bytecode.length, Arrays.copyOf(buffer, length)));
+        if (old != null) {
+            RAW_SIZE.addAndGet(-old.length);
+            COMPRESSED_SIZE.addAndGet(-old.data.length);
+        }
+
+        RAW_SIZE.addAndGet(bytecode.length);
+        COMPRESSED_SIZE.addAndGet(length);
+    }
+
+    /**
+     * @param className the binary name of the class, e.g. {@code net.minecraft.world.World}
+     * @return the captured bytecode; {@code null} if the class was not captured
+     */
+    @Nullable
+    public static byte[] get(@Nonnull String className) {
+        Entry entry = ENTRIES.get(className);
+        if (entry == null)
+            return null;
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(entry.data);
+
+        byte[] bytecode = new byte[entry.length];
+        try {
+            int length = 0;
+            while (length < bytecode.length && !inflater.finished())
+                length += inflater.inflate(bytecode, length, bytecode.length - length);
+        } catch (DataFormatException e) {
+            TotalDebug.LOGGER.error("Corrupted class bytes cache entry " + className, e);
+            ENTRIES.remove(className);
+            return null;
+        }
+
+        return bytecode;
+    }
+
+    /**
+     * Loads all classes needed by {@link #put(String, byte[])} and {@link #get(String)}.
+     */
+    static void warmUp() {
+        String name = ClassBytesCache.class.getName() + "$WarmUp";
+        put(name, new byte[1]);
+        get(name);
+
+        Entry entry = ENTRIES.remove(name);
+        RAW_SIZE.addAndGet(-entry.length);
+        COMPRESSED_SIZE.addAndGet(-entry.data.length);
+    }
+
+    public static boolean contains(@Nonnull String className) {
+        return ENTRIES.containsKey(className);
+    }
+
+    public static int size() {
+        return ENTRIES.size();
+    }
+
+    public static long getRawSize() {
+        return RAW_SIZE.get();
+    }
+
+    public static long getCompressedSize() {
+        return COMPRESSED_SIZE.get();
+    }
+
+    private static final class Entry {
+
+        private final int length;
+        private final byte[] data;
+
+        private Entry(int length, byte[] data) {
+            this.length = length;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.minecraft_ta.totaldebug.util.bytecode;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.ProcyonDecompiler;
+import net.minecraft.launchwrapper.IClassTransformer;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+/**
+ * A pass-through transformer which is appended to the end of the transformer chain and stores the final bytecode of
+ * every class that gets loaded afterwards in the {@link ClassBytesCache}. This way the decompiler and the reference
+ * searcher see exactly what the JVM runs, including all coremod and ASM patches.
+ * <br>
+ * Classes that were loaded before the transformer got registered are not captured and will still be read from their
+ * jar.
+ */
+public class ClassCaptureTransformer implements IClassTransformer {
+
+    private static boolean registered;
+
+    @Override
+    public byte[] transform(String name, String transformedName, byte[] basicClass) {
+        if (basicClass == null)
+            return null;
+
+        //a class with the same name was defined again, types resolved from the old bytecode are outdated
+        if (ClassBytesCache.contains(transformedName))
+            ProcyonDecompiler.invalidateTypeCache();
+
+        ClassBytesCache.put(transformedName, basicClass);
+
+        return basicClass;
+    }
+
+    public static void register() {
+        if (registered)
+            return;
+
+        ClassLoader classLoader = ClassCaptureTransformer.class.getClassLoader();
+        if (!(classLoader instanceof LaunchClassLoader)) {
+            TotalDebug.LOGGER.warn("Unable to capture transformed classes, unknown class loader {}", classLoader);
+            return;
+        }
+
+        //make sure the cache and its inner classes are loaded before they're used from inside the transformer,
+        //otherwise loading them would recurse into the transformer
+        ClassBytesCache.warmUp();
+        ProcyonDecompiler.invalidateTypeCache();
+
+        ((LaunchClassLoader) classLoader).registerTransformer(ClassCaptureTransformer.class.getName());
+        registered = true;
+
+        TotalDebug.LOGGER.info("Capturing transformed bytecode of all classes loaded from now on");
+    }
+
+    public static boolean isRegistered() {
+        return registered;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.minecraft_ta.totaldebug.util.bytecode;
+
+import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the classes a class directly depends on from its remapped bytecode, ordered by how likely it is that they
+ * are navigated to next: super types first, then field types, then the owners of invoked methods and accessed fields.
+ */
+public class ClassDependencyCollector {
+
+    private ClassDependencyCollector() {
+    }
+
+    /**
+     * @return the binary names of all referenced classes in the order described above, without JDK classes and
+     * without the given class and its nested classes; an empty list if the bytecode of the class could not be found
+     */
+    @Nonnull
+    public static List<String> getDependencies(@Nonnull Class<?> clazz) {
+        ClassWriter writer = RemappingUtil.getRemappedClass(clazz, new RemappingUtil.RemappingContext());
+        if (writer == null)
+            return new ArrayList<>();
+
+        ClassNode node = new ClassNode();
+        new ClassReader(writer.toByteArray()).accept(node, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+
+        Set<String> dependencies = new LinkedHashSet<>();
+        if (node.superName != null)
+            dependencies.add(node.superName);
+        dependencies.addAll(node.interfaces);
+
+        for (FieldNode field : node.fields)
+            addType(dependencies, Type.getType(field.desc));
+
+        for (MethodNode method : node.methods) {
+            for (AbstractInsnNode instruction = method.instructions.getFirst(); instruction != null; instruction = instruction.getNext()) {
+                if (instruction instanceof MethodInsnNode)
+                    addInternalName(dependencies, ((MethodInsnNode) instruction).owner);
+                else if (instruction instanceof FieldInsnNode)
+                    addInternalName(dependencies, ((FieldInsnNode) instruction).owner);
+                else if (instruction instanceof TypeInsnNode)
+                    addInternalName(dependencies, ((TypeInsnNode) instruction).desc);
+            }
+        }
+
+        List<String> result = new ArrayList<>(dependencies.size());
+        for (String internalName : dependencies) {
+            if (internalName.equals(node.name) || internalName.startsWith(node.name + "$") || isJdkClass(internalName))
+                continue;
+
+            result.add(internalName.replace('/', '.'));
+        }
+
+        return result;
+    }
+
+    private static void addType(Set<String> dependencies, Type type) {
+        if (type.getSort() == Type.ARRAY)
+            type = type.getElementType();
+        if (type.getSort() == Type.OBJECT)
+            dependencies.add(type.getInternalName());
+    }
+
+    /**
+     * @param internalName an internal name or the descriptor of an array type
+     */
+    private static void addInternalName(Set<String> dependencies, String internalName) {
+        if (internalName.startsWith("["))
+            addType(dependencies, Type.getType(internalName));
+        else
+            dependencies.add(internalName);
+    }
+
+    private static boolean isJdkClass(String internalName) {
+        return internalName.startsWith("java/") || internalName.startsWith("javax/") ||
+               internalName.startsWith("sun/") || internalName.startsWith("jdk/");
+    }
+}
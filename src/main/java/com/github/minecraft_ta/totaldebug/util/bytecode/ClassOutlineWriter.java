@@ -0,0 +1,265 @@
+package com.github.minecraft_ta.totaldebug.util.bytecode;
+
+import com.github.minecraft_ta.totaldebug.util.mappings.RemappingUtil;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a Java-like skeleton of a class straight from its remapped bytecode, containing all fields, method signatures
+ * and nested classes, but no method bodies. This is orders of magnitude faster than a full decompilation and is shown
+ * while the decompiler is still running.
+ */
+public class ClassOutlineWriter {
+
+    private static final String INDENT = "    ";
+
+    private ClassOutlineWriter() {
+    }
+
+    /**
+     * @return the outline of the given class; {@code null} if the bytecode of the class could not be found
+     */
+    @Nullable
+    public static String getOutline(@Nonnull Class<?> clazz) {
+        ClassNode node = readClassNode(clazz.getName());
+        if (node == null)
+            return null;
+
+        StringBuilder builder = new StringBuilder();
+        String packageName = getPackageName(node.name);
+        if (!packageName.isEmpty())
+            builder.append("package ").append(packageName).append(";\n\n");
+
+        writeClass(builder, node, packageName, "");
+        return builder.toString();
+    }
+
+    /**
+     * @return the declaration of the given class with its modifiers, super class and interfaces, but without the
+     * opening brace; {@code null} if the bytecode of the class could not be found
+     */
+    @Nullable
+    public static String getHeader(@Nonnull String className) {
+        ClassNode node = readClassNode(className);
+        if (node == null)
+            return null;
+
+        StringBuilder builder = new StringBuilder();
+        appendHeader(builder, node, getPackageName(node.name));
+        return builder.toString();
+    }
+
+    private static void writeClass(StringBuilder builder, ClassNode node, String packageName, String indent) {
+        String simpleName = getSimpleName(node, packageName);
+        boolean isInterface = (node.access & Opcodes.ACC_INTERFACE) != 0;
+        boolean isEnum = (node.access & Opcodes.ACC_ENUM) != 0;
+
+        builder.append(indent);
+        appendHeader(builder, node, packageName);
+        builder.append(" {\n");
+
+        String memberIndent = indent + INDENT;
+
+        //enum constants
+        if (isEnum) {
+            List<String> constants = new ArrayList<>();
+            for (FieldNode field : node.fields) {
+                if ((field.access & Opcodes.ACC_ENUM) != 0)
+                    constants.add(field.name);
+            }
+
+            if (!constants.isEmpty())
+                builder.append(memberIndent).append(String.join(", ", constants)).append(";\n\n");
+        }
+
+        //fields
+        boolean hasFields = false;
+        for (FieldNode field : node.fields) {
+            if ((field.access & Opcodes.ACC_ENUM) != 0)
+                continue;
+
+            builder.append(memberIndent);
+            appendModifiers(builder, field.access & Modifier.fieldModifiers());
+            builder.append(getTypeName(Type.getType(field.desc), packageName)).append(' ').append(field.name).append(";\n");
+            hasFields = true;
+        }
+        if (hasFields)
+            builder.append('\n');
+
+        //methods
+        for (MethodNode method : node.methods) {
+            //lambdas, bridge methods and static initializers
+            if (method.name.equals("<clinit>") || (method.access & Opcodes.ACC_SYNTHETIC) != 0)
+                continue;
+
+            builder.append(memberIndent);
+            int methodModifiers = method.access & Modifier.methodModifiers();
+            if (isInterface)
+                methodModifiers &= ~(Modifier.PUBLIC | Modifier.ABSTRACT);
+            appendModifiers(builder, methodModifiers);
+
+            if (method.name.equals("<init>")) {
+                builder.append(simpleName);
+            } else {
+                builder.append(getTypeName(Type.getReturnType(method.desc), packageName)).append(' ').append(method.name);
+            }
+
+            builder.append('(');
+            Type[] argumentTypes = Type.getArgumentTypes(method.desc);
+            int slot = (method.access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+            for (int i = 0; i < argumentTypes.length; i++) {
+                if (i > 0)
+                    builder.append(", ");
+
+                builder.append(getTypeName(argumentTypes[i], packageName)).append(' ')
+                        .append(getParameterName(method, slot, i));
+                slot += argumentTypes[i].getSize();
+            }
+            builder.append(')');
+
+            if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0)
+                builder.append(";\n");
+            else
+                builder.append(" { /* decompiling... */ }\n");
+        }
+
+        //nested classes, anonymous and local classes are part of method bodies and therefore skipped
+        for (InnerClassNode innerClass : node.innerClasses) {
+            if (!node.name.equals(innerClass.outerName) || innerClass.innerName == null)
+                continue;
+
+            ClassNode nestedNode = readClassNode(innerClass.name.replace('/', '.'));
+            if (nestedNode == null)
+                continue;
+
+            builder.append('\n');
+            writeClass(builder, nestedNode, packageName, memberIndent);
+        }
+
+        builder.append(indent).append("}\n");
+    }
+
+    private static void appendHeader(StringBuilder builder, ClassNode node, String packageName) {
+        boolean isInterface = (node.access & Opcodes.ACC_INTERFACE) != 0;
+        boolean isEnum = (node.access & Opcodes.ACC_ENUM) != 0;
+        int modifiers = getInnerClassAccess(node) & Modifier.classModifiers();
+        if (isInterface)
+            modifiers &= ~Modifier.ABSTRACT;
+        if (isEnum)
+            modifiers &= ~Modifier.FINAL;
+        appendModifiers(builder, modifiers);
+
+        if ((node.access & Opcodes.ACC_ANNOTATION) != 0)
+            builder.append("@interface ");
+        else if (isInterface)
+            builder.append("interface ");
+        else if (isEnum)
+            builder.append("enum ");
+        else
+            builder.append("class ");
+        builder.append(getSimpleName(node, packageName));
+
+        if (node.superName != null && !isEnum && !node.superName.equals("java/lang/Object"))
+            builder.append(" extends ").append(getTypeName(node.superName, packageName));
+        if (!node.interfaces.isEmpty() && (node.access & Opcodes.ACC_ANNOTATION) == 0) {
+            builder.append(isInterface ? " extends " : " implements ");
+            for (int i = 0; i < node.interfaces.size(); i++) {
+                if (i > 0)
+                    builder.append(", ");
+                builder.append(getTypeName(node.interfaces.get(i), packageName));
+            }
+        }
+    }
+
+    private static String getSimpleName(ClassNode node, String packageName) {
+        String name = getTypeName(node.name, packageName);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Only the declarations are remapped, the outline doesn't need the method bodies
+     *
+     * @param className the binary name of the class
+     */
+    @Nullable
+    private static ClassNode readClassNode(String className) {
+        byte[] bytecode = RemappingUtil.getRemappedClassHeader(className);
+        if (bytecode == null)
+            return null;
+
+        ClassNode node = new ClassNode();
+        new ClassReader(bytecode).accept(node, 0);
+        return node;
+    }
+
+    /**
+     * The access flags of the class itself don't contain {@code private}, {@code protected} and {@code static} for
+     * nested classes, these are only stored in the inner class attribute.
+     */
+    private static int getInnerClassAccess(ClassNode node) {
+        for (InnerClassNode innerClass : node.innerClasses) {
+            if (innerClass.name.equals(node.name))
+                return innerClass.access;
+        }
+
+        return node.access;
+    }
+
+    private static String getParameterName(MethodNode method, int slot, int index) {
+        //the local variable table is part of the method body and only available if the whole class was read
+        if (method.parameters != null && index < method.parameters.size())
+            return method.parameters.get(index).name;
+        if (method.localVariables != null) {
+            for (LocalVariableNode localVariable : method.localVariables) {
+                if (localVariable.index == slot)
+                    return localVariable.name;
+            }
+        }
+
+        return "arg" + index;
+    }
+
+    private static void appendModifiers(StringBuilder builder, int modifiers) {
+        if (modifiers != 0)
+            builder.append(Modifier.toString(modifiers)).append(' ');
+    }
+
+    private static String getTypeName(Type type, String packageName) {
+        if (type.getSort() == Type.ARRAY) {
+            StringBuilder name = new StringBuilder(getTypeName(type.getElementType(), packageName));
+            for (int i = 0; i < type.getDimensions(); i++)
+                name.append("[]");
+            return name.toString();
+        }
+
+        if (type.getSort() == Type.OBJECT)
+            return getTypeName(type.getInternalName(), packageName);
+
+        return type.getClassName();
+    }
+
+    /**
+     * @return the name of the given type, without the package if it's in the same package or in {@code java.lang}
+     */
+    private static String getTypeName(String internalName, String packageName) {
+        String typePackage = getPackageName(internalName);
+        String name = internalName.replace('/', '.').replace('$', '.');
+        if (typePackage.equals(packageName) || typePackage.equals("java.lang"))
+            return typePackage.isEmpty() ? name : name.substring(typePackage.length() + 1);
+
+        return name;
+    }
+
+    private static String getPackageName(String internalName) {
+        int lastSlash = internalName.lastIndexOf('/');
+        return lastSlash == -1 ? "" : internalName.substring(0, lastSlash).replace('/', '.');
+    }
+}
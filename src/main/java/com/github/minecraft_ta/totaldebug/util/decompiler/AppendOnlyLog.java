@@ -0,0 +1,30 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import javax.annotation.Nonnull;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Helpers for reading the append-only logs of the {@link CacheManifest} and the {@link SourceIndex}.
+ */
+final class AppendOnlyLog {
+
+    private AppendOnlyLog() {
+    }
+
+    /**
+     * Checks whether the log continues without consuming any byte. The given stream has to support marks.
+     *
+     * @return {@code true} if another record follows; {@code false} if the log ends cleanly after the previous record.
+     * An {@link java.io.EOFException} while reading the following record therefore always means that the record was
+     * only partially written.
+     */
+    static boolean hasNextRecord(@Nonnull DataInputStream in) throws IOException {
+        in.mark(1);
+        if (in.read() == -1)
+            return false;
+
+        in.reset();
+        return true;
+    }
+}
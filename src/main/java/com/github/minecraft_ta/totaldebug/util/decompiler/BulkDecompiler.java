@@ -0,0 +1,193 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.DecompilationManager;
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Decompiles a list of classes with {@link DecompilationExecutor.Priority#BULK} priority. Only a small window of
+ * classes is queued at once, so interactive requests don't have to wait behind thousands of queued jobs and the
+ * decompiler threads keep their warm type caches for the whole run.
+ * <br>
+ * Only classes which are already loaded can be decompiled. The decompiler resolves types and the remapper walks class
+ * hierarchies through {@link Class} objects, and loading thousands of classes just to decompile them would run their
+ * static initializers or fail for client or server only classes.
+ */
+public class BulkDecompiler {
+
+    private static final AtomicReference<BulkDecompiler> RUNNING = new AtomicReference<>();
+
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    private final List<Class<?>> classes;
+    private final ProgressListener listener;
+    private final ZipOutputStream zipOutputStream;
+    private final CompletableFuture<Result> future = new CompletableFuture<>();
+
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private volatile boolean cancelled;
+    private volatile long lastProgressTime;
+
+    private BulkDecompiler(@Nonnull List<Class<?>> classes, @Nullable ZipOutputStream zipOutputStream,
+                           @Nonnull ProgressListener listener) {
+        this.classes = classes;
+        this.zipOutputStream = zipOutputStream;
+        this.listener = listener;
+    }
+
+    /**
+     * @param classes    the loaded top level classes to decompile
+     * @param zipFile    the file all decompiled sources are additionally written to; {@code null} to only fill the
+     *                   decompilation cache
+     * @return the result of the run; {@code null} if another run is already in progress
+     */
+    @Nullable
+    public static CompletableFuture<Result> start(@Nonnull List<Class<?>> classes, @Nullable Path zipFile,
+                                                  @Nonnull ProgressListener listener) throws IOException {
+        ZipOutputStream zipOutputStream = zipFile == null ? null : new ZipOutputStream(Files.newOutputStream(zipFile));
+        BulkDecompiler bulkDecompiler = new BulkDecompiler(classes, zipOutputStream, listener);
+        if (!RUNNING.compareAndSet(null, bulkDecompiler)) {
+            if (zipOutputStream != null) {
+                zipOutputStream.close();
+                Files.deleteIfExists(zipFile);
+            }
+            return null;
+        }
+
+        int window = TotalDebug.PROXY.getDecompilationManager().getExecutor().getParallelism() * 2;
+        bulkDecompiler.runningCount.set(window);
+        for (int i = 0; i < window; i++)
+            bulkDecompiler.submitNext();
+
+        return bulkDecompiler.future;
+    }
+
+    /**
+     * Stops the current run after the classes which are currently decompiled.
+     *
+     * @return {@code true} if a run was cancelled; {@code false} if there's no run in progress
+     */
+    public static boolean cancel() {
+        BulkDecompiler bulkDecompiler = RUNNING.get();
+        if (bulkDecompiler == null)
+            return false;
+
+        bulkDecompiler.cancelled = true;
+        return true;
+    }
+
+    private void submitNext() {
+        int index = this.nextIndex.getAndIncrement();
+        if (this.cancelled || index >= this.classes.size()) {
+            if (this.runningCount.decrementAndGet() == 0)
+                finish();
+            return;
+        }
+
+        DecompilationManager manager = TotalDebug.PROXY.getDecompilationManager();
+        Class<?> clazz = this.classes.get(index);
+        manager.decompileClassAsync(clazz, DecompilationExecutor.Priority.BULK)
+                .thenAccept(success -> {
+                    if (!success)
+                        this.failedCount.incrementAndGet();
+                    else if (this.zipOutputStream != null)
+                        writeToZip(manager, clazz.getName());
+                })
+                .whenComplete((v, throwable) -> {
+                    if (throwable != null) {
+                        this.failedCount.incrementAndGet();
+                        TotalDebug.LOGGER.error("Unable to decompile class " + clazz.getName(), throwable);
+                    }
+
+                    int completed = this.completedCount.incrementAndGet();
+                    long time = System.currentTimeMillis();
+                    if (time - this.lastProgressTime >= PROGRESS_INTERVAL) {
+                        this.lastProgressTime = time;
+                        this.listener.onProgress(completed, this.failedCount.get(), this.classes.size());
+                    }
+
+                    submitNext();
+                });
+    }
+
+    private void writeToZip(DecompilationManager manager, String className) {
+        byte[] source = manager.readDecompiledFile(className).getBytes(StandardCharsets.UTF_8);
+        synchronized (this.zipOutputStream) {
+            try {
+                this.zipOutputStream.putNextEntry(new ZipEntry(className.replace('.', '/') + ".java"));
+                this.zipOutputStream.write(source);
+                this.zipOutputStream.closeEntry();
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to write " + className + " to zip file", e);
+            }
+        }
+    }
+
+    private void finish() {
+        if (this.zipOutputStream != null) {
+            try {
+                this.zipOutputStream.close();
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to close zip file", e);
+            }
+        }
+
+        RUNNING.set(null);
+        this.future.complete(new Result(this.completedCount.get(), this.failedCount.get(), this.classes.size(), this.cancelled));
+    }
+
+    public interface ProgressListener {
+
+        /**
+         * Called from a decompiler thread at most once per second.
+         */
+        void onProgress(int completed, int failed, int total);
+    }
+
+    public static final class Result {
+
+        private final int completed;
+        private final int failed;
+        private final int total;
+        private final boolean cancelled;
+
+        private Result(int completed, int failed, int total, boolean cancelled) {
+            this.completed = completed;
+            this.failed = failed;
+            this.total = total;
+            this.cancelled = cancelled;
+        }
+
+        public int getCompleted() {
+            return this.completed;
+        }
+
+        public int getFailed() {
+            return this.failed;
+        }
+
+        public int getTotal() {
+            return this.total;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+    }
+}
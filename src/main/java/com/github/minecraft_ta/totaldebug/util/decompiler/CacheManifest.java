@@ -0,0 +1,154 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the inputs every cached decompilation was created from: the hash of the class bytes, the mappings version
+ * and the decompiler settings version. A cached file is only reused if all of them still match, which means a mod
+ * update only invalidates the classes which actually changed.
+ * <br>
+ * The manifest is an append-only log of {@code (className, key)} records where later records replace earlier ones. It
+ * is compacted on load once it contains too many outdated records.
+ */
+public class CacheManifest {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path path;
+    private final Map<String, Key> entries = new ConcurrentHashMap<>();
+
+    private DataOutputStream out;
+
+    public CacheManifest(@Nonnull Path path) {
+        this.path = path;
+    }
+
+    public synchronized void load() {
+        int recordCount = 0;
+        boolean truncated = false;
+        if (Files.exists(this.path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path)))) {
+                if (in.readInt() == FORMAT_VERSION) {
+                    while (AppendOnlyLog.hasNextRecord(in)) {
+                        String className = in.readUTF();
+                        this.entries.put(className, new Key(in.readUTF(), in.readLong(), in.readInt()));
+                        recordCount++;
+                    }
+                }
+            } catch (EOFException e) {
+                //the game was most likely closed while writing the last record, it has to be cut off before appending
+                truncated = true;
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to read decompilation cache manifest", e);
+            }
+        }
+
+        try {
+            if (truncated || recordCount == 0 || recordCount > this.entries.size() * 2)
+                compact();
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.path, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to open decompilation cache manifest", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the cached decompilation of the given class was created from the given inputs
+     */
+    public boolean isUpToDate(@Nonnull String className, @Nonnull Key key) {
+        return key.equals(this.entries.get(className));
+    }
+
+    public synchronized void put(@Nonnull String className, @Nonnull Key key) {
+        if (key.equals(this.entries.put(className, key)) || this.out == null)
+            return;
+
+        try {
+            this.out.writeUTF(className);
+            this.out.writeUTF(key.classHash);
+            this.out.writeLong(key.mappingsVersion);
+            this.out.writeInt(key.settingsVersion);
+            this.out.flush();
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to write decompilation cache manifest", e);
+        }
+    }
+
+    /**
+     * Rewrites the manifest so that it only contains the current entries
+     */
+    private void compact() throws IOException {
+        Path tempFile = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            for (Map.Entry<String, Key> entry : this.entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().classHash);
+                out.writeLong(entry.getValue().mappingsVersion);
+                out.writeInt(entry.getValue().settingsVersion);
+            }
+        }
+
+        Files.move(tempFile, this.path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static final class Key {
+
+        private final String classHash;
+        private final long mappingsVersion;
+        private final int settingsVersion;
+
+        public Key(@Nonnull String classHash, long mappingsVersion, int settingsVersion) {
+            this.classHash = classHash;
+            this.mappingsVersion = mappingsVersion;
+            this.settingsVersion = settingsVersion;
+        }
+
+        /**
+         * @return the hash of the given class bytes as used by the keys
+         */
+        @Nonnull
+        public static String hash(@Nonnull byte[] classBytes) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(classBytes);
+                StringBuilder hash = new StringBuilder(digest.length * 2);
+                for (byte b : digest)
+                    hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+                return hash.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return this.mappingsVersion == key.mappingsVersion &&
+                   this.settingsVersion == key.settingsVersion &&
+                   this.classHash.equals(key.classHash);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.classHash.hashCode();
+            result = 31 * result + Long.hashCode(this.mappingsVersion);
+            result = 31 * result + this.settingsVersion;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded thread pool for decompilation jobs. Queued jobs are executed by {@link Priority} first and in submission
+ * order second, so interactive requests never wait behind background work.
+ */
+public class DecompilationExecutor {
+
+    public enum Priority {
+        /**
+         * keybind and command requests
+         */
+        INTERACTIVE,
+        /**
+         * requests sent by the companion app
+         */
+        COMPANION,
+        /**
+         * speculative background decompilation
+         */
+        PREFETCH,
+        /**
+         * mass decompilation of whole packages or mods
+         */
+        BULK
+    }
+
+    /**
+     * at most this many abandoned threads are replaced at once, further abandoned jobs keep occupying their thread
+     */
+    private static final int MAX_REPLACED_THREADS = 4;
+
+    private static final ThreadLocal<Priority> CURRENT_PRIORITY = new ThreadLocal<>();
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger[] queueDepths = new AtomicInteger[Priority.values().length];
+    private final AtomicLong[] completedCounts = new AtomicLong[Priority.values().length];
+    /**
+     * worker thread -> future of the job it's currently running
+     */
+    private final Map<Thread, CompletableFuture<?>> runningJobs = new ConcurrentHashMap<>();
+    /**
+     * worker threads whose job was abandoned, these are replaced by additional threads until they finish
+     */
+    private final Set<Thread> abandonedThreads = ConcurrentHashMap.newKeySet();
+
+    private int parallelism;
+
+    private final ThreadPoolExecutor executor;
+
+    public DecompilationExecutor(int parallelism) {
+        this.parallelism = parallelism;
+        for (int i = 0; i < this.queueDepths.length; i++) {
+            this.queueDepths[i] = new AtomicInteger();
+            this.completedCounts[i] = new AtomicLong();
+        }
+
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "TotalDebug Decompiler #" + this.threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Nonnull
+    public <T> CompletableFuture<T> supply(@Nonnull Priority priority, @Nonnull Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.queueDepths[priority.ordinal()].incrementAndGet();
+        this.executor.execute(new PrioritizedTask(priority, this.sequence.getAndIncrement(), () -> {
+            Thread thread = Thread.currentThread();
+            this.runningJobs.put(thread, future);
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                this.runningJobs.remove(thread);
+                if (this.abandonedThreads.remove(thread))
+                    updatePoolSize();
+            }
+        }));
+
+        return future;
+    }
+
+    @Nonnull
+    public CompletableFuture<Void> run(@Nonnull Priority priority, @Nonnull Runnable runnable) {
+        return supply(priority, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return an executor which submits every task as a job with the given priority, e.g. for the continuations of
+     * futures which would otherwise run on the common pool
+     */
+    @Nonnull
+    public Executor asExecutor(@Nonnull Priority priority) {
+        return runnable -> run(priority, runnable);
+    }
+
+    /**
+     * Completes the future of the job running on the given thread exceptionally, without waiting for the job to
+     * finish. Up to {@link #MAX_REPLACED_THREADS} additional threads are started until the abandoned jobs finish, so
+     * that other jobs are not blocked by them.
+     * <br>
+     * The abandoned job keeps running and using the CPU until it finishes by itself. It's not interrupted, because an
+     * interrupt closes any file channel the thread is using at that moment, including the one of the {@link PackStore}.
+     *
+     * @return {@code true} if the job was abandoned; {@code false} if the thread isn't running a job
+     */
+    public boolean abandon(@Nonnull Thread thread, @Nonnull Throwable reason) {
+        CompletableFuture<?> future = this.runningJobs.get(thread);
+        if (future == null || !future.completeExceptionally(reason))
+            return false;
+
+        synchronized (this) {
+            if (this.abandonedThreads.size() >= MAX_REPLACED_THREADS) {
+                TotalDebug.LOGGER.warn("Not replacing {}, {} abandoned decompiler threads are still running", thread.getName(), this.abandonedThreads.size());
+                return true;
+            }
+
+            this.abandonedThreads.add(thread);
+            updatePoolSize();
+        }
+
+        return true;
+    }
+
+    /**
+     * Changes the amount of threads used for decompilation. Running jobs are not affected.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism == this.parallelism)
+            return;
+
+        this.parallelism = parallelism;
+        updatePoolSize();
+
+        TotalDebug.LOGGER.info("Decompilation parallelism set to {}", parallelism);
+    }
+
+    private synchronized void updatePoolSize() {
+        int poolSize = this.parallelism + this.abandonedThreads.size();
+        if (poolSize == this.executor.getMaximumPoolSize())
+            return;
+
+        //the core pool size may never be larger than the maximum
+        if (poolSize > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(poolSize);
+            this.executor.setCorePoolSize(poolSize);
+        } else {
+            this.executor.setCorePoolSize(poolSize);
+            this.executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    public synchronized int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * @return the amount of jobs with the given priority which are waiting to be executed
+     */
+    public int getQueueDepth(@Nonnull Priority priority) {
+        return this.queueDepths[priority.ordinal()].get();
+    }
+
+    /**
+     * @return the amount of jobs with the given priority which finished executing
+     */
+    public long getCompletedCount(@Nonnull Priority priority) {
+        return this.completedCounts[priority.ordinal()].get();
+    }
+
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * @return the priority of the job running on the current thread; {@code null} if the current thread is not a
+     * decompiler thread
+     */
+    @Nullable
+    public static Priority getCurrentPriority() {
+        return CURRENT_PRIORITY.get();
+    }
+
+    private final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final Priority priority;
+        private final long sequence;
+        private final Runnable runnable;
+
+        private PrioritizedTask(Priority priority, long sequence, Runnable runnable) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            queueDepths[this.priority.ordinal()].decrementAndGet();
+            CURRENT_PRIORITY.set(this.priority);
+            try {
+                this.runnable.run();
+            } finally {
+                CURRENT_PRIORITY.remove();
+                completedCounts[this.priority.ordinal()].incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(@Nonnull PrioritizedTask o) {
+            int result = this.priority.compareTo(o.priority);
+            return result != 0 ? result : Long.compare(this.sequence, o.sequence);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import javax.annotation.Nonnull;
+
+public class DecompilationResult {
+
+    private final String source;
+    private final LineNumberMapping lineNumberMapping;
+    private final NavigationMap navigationMap;
+
+    public DecompilationResult(@Nonnull String source, @Nonnull LineNumberMapping lineNumberMapping, @Nonnull NavigationMap navigationMap) {
+        this.source = source;
+        this.lineNumberMapping = lineNumberMapping;
+        this.navigationMap = navigationMap;
+    }
+
+    @Nonnull
+    public String getSource() {
+        return this.source;
+    }
+
+    @Nonnull
+    public LineNumberMapping getLineNumberMapping() {
+        return this.lineNumberMapping;
+    }
+
+    @Nonnull
+    public NavigationMap getNavigationMap() {
+        return this.navigationMap;
+    }
+}
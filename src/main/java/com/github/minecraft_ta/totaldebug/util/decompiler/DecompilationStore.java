@@ -0,0 +1,39 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Stores decompiled sources and their sidecar files, keyed by file name, e.g. {@code net.minecraft.world.World.java}.
+ */
+public interface DecompilationStore {
+
+    boolean contains(@Nonnull String fileName);
+
+    /**
+     * @return the names of all files in this store
+     */
+    @Nonnull
+    List<String> getFileNames() throws IOException;
+
+    /**
+     * @return the content of the given file; {@code null} if the file is not part of this store or could not be read
+     */
+    @Nullable
+    byte[] read(@Nonnull String fileName);
+
+    /**
+     * Replaces the given file. Readers never see a partially written file.
+     */
+    void write(@Nonnull String fileName, @Nonnull byte[] data) throws IOException;
+
+    /**
+     * @return a path on disk which contains the given file, for consumers which need a real file like the companion
+     * app
+     */
+    @Nonnull
+    Path getPath(@Nonnull String fileName) throws IOException;
+}
@@ -0,0 +1,227 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches all running decompilations and cancels them if they exceed their time budget or if the heap is about to run
+ * out. Cancellation is cooperative: the decompiler calls {@link #checkCancelled()} whenever it loads a type or writes
+ * output. Jobs that don't reach such a check point within a grace period after being cancelled are abandoned, so that
+ * anything waiting for them can continue. An abandoned job still runs and uses the CPU until it finishes by itself, the
+ * timeout only bounds how long others wait for it.
+ * <br>
+ * The heap usage is measured after the last garbage collection of each memory pool, garbage which was not collected
+ * yet doesn't count as used.
+ */
+public class DecompilationWatchdog {
+
+    private static final long CHECK_INTERVAL = 100;
+    private static final long ABANDON_GRACE_PERIOD = 5000;
+    /**
+     * the heap has to stay above the limit for this many checks, short spikes are usually just garbage
+     */
+    private static final int HEAP_LIMIT_CHECKS = 10;
+    /**
+     * percentage of the heap limit up to which optional background work like prefetching is started
+     */
+    private static final int BACKGROUND_HEAP_LIMIT = 75;
+
+    private static final ThreadLocal<Job> CURRENT_JOB = new ThreadLocal<>();
+
+    private final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TotalDebug Decompilation Watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * budget per job in milliseconds; 0 if unlimited
+     */
+    private volatile long timeout;
+    /**
+     * percentage of the maximum heap size above which the least important job is cancelled; 0 if unlimited
+     */
+    private volatile int heapLimit;
+    private int heapLimitExceededCount;
+
+    public DecompilationWatchdog(int timeoutSeconds, int heapLimit) {
+        setLimits(timeoutSeconds, heapLimit);
+        this.scheduler.scheduleWithFixedDelay(this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public void setLimits(int timeoutSeconds, int heapLimit) {
+        this.timeout = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.heapLimit = heapLimit;
+    }
+
+    /**
+     * Starts watching a job which runs on the current thread. The returned job has to be closed once the job finished.
+     *
+     * @param priority  the priority of the job, jobs with a lower priority are cancelled first if the heap runs out;
+     *                  {@code null} if the job doesn't run on the executor and is treated as interactive
+     * @param onAbandon called from the watchdog thread with the reason of the cancellation if the job was cancelled
+     *                  but didn't stop in time
+     */
+    @Nonnull
+    public Job start(@Nonnull String name, @Nullable DecompilationExecutor.Priority priority,
+                     @Nonnull Consumer<CancellationException> onAbandon) {
+        Job job = new Job(name, priority == null ? DecompilationExecutor.Priority.INTERACTIVE : priority, onAbandon);
+        this.jobs.add(job);
+        CURRENT_JOB.set(job);
+        return job;
+    }
+
+    /**
+     * Check point for cooperative cancellation.
+     *
+     * @throws CancellationException if the job running on the current thread was cancelled
+     */
+    public static void checkCancelled() {
+        Job job = CURRENT_JOB.get();
+        if (job != null && job.reason != null)
+            throw job.getCancellationException();
+    }
+
+    /**
+     * @return {@code true} if the heap usage leaves enough room for optional background work; it stops well before
+     * running jobs would be cancelled
+     */
+    public boolean hasHeapHeadroom() {
+        int heapLimit = this.heapLimit;
+        return getHeapUsage() < (heapLimit > 0 ? heapLimit : 100) * BACKGROUND_HEAP_LIMIT / 100;
+    }
+
+    /**
+     * @return the used percentage of the maximum heap size, based on the usage after the last collection of each pool.
+     * Pools are only collected once they fill up, so this is close to the actual live data without counting garbage.
+     */
+    private static long getHeapUsage() {
+        long usedMemory = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isValid())
+                continue;
+
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null)
+                usage = pool.getUsage();
+            usedMemory += usage.getUsed();
+        }
+
+        return usedMemory * 100 / Runtime.getRuntime().maxMemory();
+    }
+
+    private void check() {
+        long time = System.currentTimeMillis();
+        long timeout = this.timeout;
+
+        Job leastImportantJob = null;
+        for (Job job : this.jobs) {
+            if (job.reason == null && timeout > 0 && time - job.startTime > timeout)
+                job.cancel("it took longer than " + TimeUnit.MILLISECONDS.toSeconds(timeout) + " seconds", false);
+
+            if (job.reason != null && !job.abandoned && time - job.cancelTime > ABANDON_GRACE_PERIOD) {
+                job.abandoned = true;
+                TotalDebug.LOGGER.warn("Decompilation of {} did not stop after being cancelled, abandoning it", job.name);
+                try {
+                    job.onAbandon.accept(job.getCancellationException());
+                } catch (Throwable t) {
+                    TotalDebug.LOGGER.error("Error while abandoning decompilation of " + job.name, t);
+                }
+            }
+
+            if (job.reason == null && (leastImportantJob == null || isLessImportant(job, leastImportantJob)))
+                leastImportantJob = job;
+        }
+
+        int heapLimit = this.heapLimit;
+        if (heapLimit <= 0 || leastImportantJob == null)
+            return;
+
+        if (getHeapUsage() < heapLimit) {
+            this.heapLimitExceededCount = 0;
+        } else if (++this.heapLimitExceededCount >= HEAP_LIMIT_CHECKS) {
+            this.heapLimitExceededCount = 0;
+            //the job itself is fine, it can be retried once the heap usage went down
+            leastImportantJob.cancel("the heap usage exceeded " + heapLimit + "%", true);
+        }
+    }
+
+    /**
+     * @return {@code true} if the first job should be cancelled before the second one: bulk and prefetch jobs go
+     * first, jobs with the same priority by their running time
+     */
+    private static boolean isLessImportant(Job job, Job other) {
+        int result = job.priority.compareTo(other.priority);
+        return result != 0 ? result > 0 : job.startTime < other.startTime;
+    }
+
+    public final class Job implements AutoCloseable {
+
+        private final String name;
+        private final DecompilationExecutor.Priority priority;
+        private final Consumer<CancellationException> onAbandon;
+        private final long startTime = System.currentTimeMillis();
+
+        private volatile String reason;
+        private volatile boolean retryable;
+        private volatile long cancelTime;
+        private volatile boolean abandoned;
+
+        private Job(String name, DecompilationExecutor.Priority priority, Consumer<CancellationException> onAbandon) {
+            this.name = name;
+            this.priority = priority;
+            this.onAbandon = onAbandon;
+        }
+
+        /**
+         * @param retryable whether the job might succeed if it's started again
+         */
+        private void cancel(String reason, boolean retryable) {
+            this.cancelTime = System.currentTimeMillis();
+            this.retryable = retryable;
+            this.reason = reason;
+            TotalDebug.LOGGER.warn("Cancelling decompilation of {} because {}", this.name, reason);
+        }
+
+        private CancellationException getCancellationException() {
+            return new CancellationException(this.name, this.reason, this.retryable);
+        }
+
+        @Override
+        public void close() {
+            jobs.remove(this);
+            CURRENT_JOB.remove();
+        }
+    }
+
+    public static class CancellationException extends RuntimeException {
+
+        private final boolean retryable;
+
+        public CancellationException(String name, String reason, boolean retryable) {
+            super("Decompilation of " + name + " was cancelled because " + reason);
+            this.retryable = retryable;
+        }
+
+        /**
+         * @return {@code true} if the job was cancelled because of its environment, e.g. the heap usage, and not
+         * because of the job itself
+         */
+        public boolean isRetryable() {
+            return this.retryable;
+        }
+    }
+}
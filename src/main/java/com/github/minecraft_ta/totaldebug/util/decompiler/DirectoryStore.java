@@ -0,0 +1,85 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores every file as a plain file in a directory.
+ */
+public class DirectoryStore implements DecompilationStore {
+
+    private final Path directory;
+    private final Path tempDirectory;
+
+    /**
+     * @param tempDirectory the directory for partially written files; has to be on the same file system as the store
+     *                      directory
+     */
+    public DirectoryStore(@Nonnull Path directory, @Nonnull Path tempDirectory) {
+        this.directory = directory;
+        this.tempDirectory = tempDirectory;
+    }
+
+    @Override
+    public boolean contains(@Nonnull String fileName) {
+        return Files.exists(this.directory.resolve(fileName));
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getFileNames() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    @Nullable
+    @Override
+    public byte[] read(@Nonnull String fileName) {
+        Path path = this.directory.resolve(fileName);
+        if (!Files.exists(path))
+            return null;
+
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Error while reading decompiled file " + fileName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given bytes to a temporary file first and then moves it to the target path, so that readers never see
+     * a partially written file.
+     */
+    @Override
+    public void write(@Nonnull String fileName, @Nonnull byte[] data) throws IOException {
+        Path tempFile = Files.createTempFile(this.tempDirectory, fileName, ".tmp");
+        try {
+            Files.write(tempFile, data);
+            try {
+                Files.move(tempFile, this.directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, this.directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Path getPath(@Nonnull String fileName) {
+        return this.directory.resolve(fileName);
+    }
+}
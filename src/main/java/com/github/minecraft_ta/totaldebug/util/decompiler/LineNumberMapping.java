@@ -0,0 +1,117 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Maps source lines from the line number table of a class to the lines of its decompiled source. The line number table
+ * itself maps bytecode offsets to these source lines, so together they allow jumping from an instruction straight to
+ * the decompiled code.
+ */
+public class LineNumberMapping {
+
+    public static final String FILE_EXTENSION = ".lines";
+
+    public static final LineNumberMapping EMPTY = new LineNumberMapping(new int[0], new int[0]);
+
+    /**
+     * sorted source lines
+     */
+    private final int[] originalLines;
+    private final int[] decompiledLines;
+
+    private LineNumberMapping(int[] originalLines, int[] decompiledLines) {
+        this.originalLines = originalLines;
+        this.decompiledLines = decompiledLines;
+    }
+
+    /**
+     * @param originalLine a line from the line number table
+     * @return the decompiled line for the given line, or for the closest preceding line if there's no exact match;
+     * {@code -1} if no line could be found
+     */
+    public int getDecompiledLine(int originalLine) {
+        if (this.originalLines.length == 0 || originalLine < 0)
+            return -1;
+
+        int index = Arrays.binarySearch(this.originalLines, originalLine);
+        if (index < 0) {
+            int insertionPoint = -index - 1;
+            index = insertionPoint == 0 ? 0 : insertionPoint - 1;
+        }
+
+        return this.decompiledLines[index];
+    }
+
+    @Nonnull
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + this.originalLines.length * 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(this.originalLines.length);
+            for (int i = 0; i < this.originalLines.length; i++) {
+                out.writeInt(this.originalLines[i]);
+                out.writeInt(this.decompiledLines[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes the content of a mapping file
+     * @return the mapping stored in the given bytes; {@code null} if the bytes are {@code null} or could not be read
+     */
+    @Nullable
+    public static LineNumberMapping read(@Nullable byte[] bytes) {
+        if (bytes == null)
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int size = in.readInt();
+            int[] originalLines = new int[size];
+            int[] decompiledLines = new int[size];
+            for (int i = 0; i < size; i++) {
+                originalLines[i] = in.readInt();
+                decompiledLines[i] = in.readInt();
+            }
+
+            return new LineNumberMapping(originalLines, decompiledLines);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to read line number mapping", e);
+            return null;
+        }
+    }
+
+    /**
+     * Builds a mapping from unordered (source line, decompiled line) pairs. If a source line was emitted multiple
+     * times, the first decompiled line is used.
+     */
+    @Nonnull
+    public static LineNumberMapping of(@Nonnull int[] originalLines, @Nonnull int[] decompiledLines) {
+        long[] pairs = new long[originalLines.length];
+        for (int i = 0; i < pairs.length; i++)
+            pairs[i] = ((long) originalLines[i] << 32) | (decompiledLines[i] & 0xFFFFFFFFL);
+        Arrays.sort(pairs);
+
+        int[] sortedOriginalLines = new int[pairs.length];
+        int[] sortedDecompiledLines = new int[pairs.length];
+        int size = 0;
+        for (long pair : pairs) {
+            int originalLine = (int) (pair >>> 32);
+            if (size > 0 && sortedOriginalLines[size - 1] == originalLine)
+                continue;
+
+            sortedOriginalLines[size] = originalLine;
+            sortedDecompiledLines[size] = (int) pair;
+            size++;
+        }
+
+        return new LineNumberMapping(Arrays.copyOf(sortedOriginalLines, size), Arrays.copyOf(sortedDecompiledLines, size));
+    }
+}
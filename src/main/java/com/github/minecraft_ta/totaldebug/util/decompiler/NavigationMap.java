@@ -0,0 +1,279 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps the identifiers in a decompiled file to the classes and members they reference, and the members declared in
+ * the file to their lines. It's created from the type information of the decompiler, so navigating from a position in
+ * the file doesn't require parsing or resolving anything.
+ * <br>
+ * Members are identified by their name for fields, by their name followed by their erased descriptor for methods and by
+ * an empty string for the class itself.
+ */
+public class NavigationMap {
+
+    public static final String FILE_EXTENSION = ".nav";
+
+    public static final NavigationMap EMPTY = new NavigationMap(new String[0], new String[0], new long[0], new int[0], new int[0], new Object2IntOpenHashMap<>());
+
+    private final String[] targetClassNames;
+    private final String[] targetMembers;
+
+    /**
+     * sorted {@code line << 32 | column} of the first character of every reference, both starting at 1
+     */
+    private final long[] rangeStarts;
+    private final int[] rangeLengths;
+    private final int[] rangeTargets;
+
+    /**
+     * {@code className#member} -> line
+     */
+    private final Object2IntMap<String> declarationLines;
+
+    private NavigationMap(String[] targetClassNames, String[] targetMembers, long[] rangeStarts, int[] rangeLengths,
+                          int[] rangeTargets, Object2IntMap<String> declarationLines) {
+        this.targetClassNames = targetClassNames;
+        this.targetMembers = targetMembers;
+        this.rangeStarts = rangeStarts;
+        this.rangeLengths = rangeLengths;
+        this.rangeTargets = rangeTargets;
+        this.declarationLines = declarationLines;
+        this.declarationLines.defaultReturnValue(-1);
+    }
+
+    /**
+     * @param line   the line, starting at 1
+     * @param column the column, starting at 1
+     * @return the index of the reference at the given position; {@code -1} if there's no reference
+     */
+    public int getReferenceAt(int line, int column) {
+        int index = Arrays.binarySearch(this.rangeStarts, (long) line << 32 | column);
+        if (index < 0) {
+            //the last reference starting before the position
+            index = -index - 2;
+            if (index < 0)
+                return -1;
+        }
+
+        long start = this.rangeStarts[index];
+        if ((int) (start >>> 32) != line || column >= (int) start + this.rangeLengths[index])
+            return -1;
+
+        return index;
+    }
+
+    /**
+     * @return the binary name of the class referenced by the given reference
+     */
+    public String getTargetClassName(int reference) {
+        return this.targetClassNames[this.rangeTargets[reference]];
+    }
+
+    /**
+     * @return the member referenced by the given reference; an empty string if the class itself is referenced
+     */
+    public String getTargetMember(int reference) {
+        return this.targetMembers[this.rangeTargets[reference]];
+    }
+
+    /**
+     * @param className the binary name of the class declaring the member
+     * @return the line of the declaration of the given member, starting at 1; {@code -1} if it's not declared in this
+     * file
+     */
+    public int getDeclarationLine(String className, String member) {
+        return this.declarationLines.getInt(className + "#" + member);
+    }
+
+    /**
+     * @return the name of the given method member
+     */
+    public static String getMethodName(String member) {
+        int index = member.indexOf('(');
+        return index == -1 ? member : member.substring(0, index);
+    }
+
+    @Nonnull
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(this.targetClassNames.length);
+            for (int i = 0; i < this.targetClassNames.length; i++) {
+                out.writeUTF(this.targetClassNames[i]);
+                out.writeUTF(this.targetMembers[i]);
+            }
+
+            out.writeInt(this.rangeStarts.length);
+            for (int i = 0; i < this.rangeStarts.length; i++) {
+                out.writeLong(this.rangeStarts[i]);
+                out.writeInt(this.rangeLengths[i]);
+                out.writeInt(this.rangeTargets[i]);
+            }
+
+            out.writeInt(this.declarationLines.size());
+            for (Object2IntMap.Entry<String> entry : this.declarationLines.object2IntEntrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getIntValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes the content of a navigation map file
+     * @return the map stored in the given bytes; {@code null} if the bytes are {@code null} or could not be read
+     */
+    @Nullable
+    public static NavigationMap read(@Nullable byte[] bytes) {
+        if (bytes == null)
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int targetCount = in.readInt();
+            String[] targetClassNames = new String[targetCount];
+            String[] targetMembers = new String[targetCount];
+            for (int i = 0; i < targetCount; i++) {
+                targetClassNames[i] = in.readUTF();
+                targetMembers[i] = in.readUTF();
+            }
+
+            int rangeCount = in.readInt();
+            long[] rangeStarts = new long[rangeCount];
+            int[] rangeLengths = new int[rangeCount];
+            int[] rangeTargets = new int[rangeCount];
+            for (int i = 0; i < rangeCount; i++) {
+                rangeStarts[i] = in.readLong();
+                rangeLengths[i] = in.readInt();
+                rangeTargets[i] = in.readInt();
+            }
+
+            int declarationCount = in.readInt();
+            Object2IntMap<String> declarationLines = new Object2IntOpenHashMap<>(declarationCount);
+            for (int i = 0; i < declarationCount; i++)
+                declarationLines.put(in.readUTF(), in.readInt());
+
+            return new NavigationMap(targetClassNames, targetMembers, rangeStarts, rangeLengths, rangeTargets, declarationLines);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to read navigation map", e);
+            return null;
+        }
+    }
+
+    /**
+     * Collects references and declarations by their offset in the output while it's written. Offsets are converted to
+     * lines and columns once the output is complete.
+     */
+    public static class Builder {
+
+        private final List<String> targetClassNames = new ArrayList<>();
+        private final List<String> targetMembers = new ArrayList<>();
+        private final Object2IntMap<String> targetIds = new Object2IntOpenHashMap<>();
+
+        private final IntArrayList referenceOffsets = new IntArrayList();
+        private final IntArrayList referenceLengths = new IntArrayList();
+        private final IntArrayList referenceTargets = new IntArrayList();
+
+        private final List<String> declarations = new ArrayList<>();
+        private final IntArrayList declarationOffsets = new IntArrayList();
+
+        public Builder() {
+            this.targetIds.defaultReturnValue(-1);
+        }
+
+        /**
+         * @param offset    the offset of the first character of the reference in the output
+         * @param className the binary name of the referenced class
+         */
+        public void addReference(int offset, int length, @Nonnull String className, @Nonnull String member) {
+            String key = className + "#" + member;
+            int id = this.targetIds.getInt(key);
+            if (id == -1) {
+                id = this.targetClassNames.size();
+                this.targetClassNames.add(className);
+                this.targetMembers.add(member);
+                this.targetIds.put(key, id);
+            }
+
+            this.referenceOffsets.add(offset);
+            this.referenceLengths.add(length);
+            this.referenceTargets.add(id);
+        }
+
+        /**
+         * @param offset    the offset of the name of the declaration in the output
+         * @param className the binary name of the class declaring the member
+         */
+        public void addDeclaration(int offset, @Nonnull String className, @Nonnull String member) {
+            this.declarations.add(className + "#" + member);
+            this.declarationOffsets.add(offset);
+        }
+
+        /**
+         * @param source the complete output the offsets refer to
+         */
+        @Nonnull
+        public NavigationMap build(@Nonnull String source) {
+            IntArrayList lineStarts = new IntArrayList();
+            lineStarts.add(0);
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n')
+                    lineStarts.add(i + 1);
+            }
+
+            //references are written in order, but sorting keeps lookups correct if they ever aren't
+            long[] sortKeys = new long[this.referenceOffsets.size()];
+            for (int i = 0; i < sortKeys.length; i++)
+                sortKeys[i] = (long) this.referenceOffsets.getInt(i) << 32 | i;
+            Arrays.sort(sortKeys);
+
+            long[] rangeStarts = new long[sortKeys.length];
+            int[] rangeLengths = new int[sortKeys.length];
+            int[] rangeTargets = new int[sortKeys.length];
+            for (int i = 0; i < sortKeys.length; i++) {
+                int index = (int) sortKeys[i];
+                int offset = this.referenceOffsets.getInt(index);
+                int line = getLineIndex(lineStarts, offset);
+                rangeStarts[i] = (long) (line + 1) << 32 | (offset - lineStarts.getInt(line) + 1);
+                rangeLengths[i] = this.referenceLengths.getInt(index);
+                rangeTargets[i] = this.referenceTargets.getInt(index);
+            }
+
+            Object2IntMap<String> declarationLines = new Object2IntOpenHashMap<>(this.declarations.size());
+            for (int i = 0; i < this.declarations.size(); i++) {
+                if (!declarationLines.containsKey(this.declarations.get(i)))
+                    declarationLines.put(this.declarations.get(i), getLineIndex(lineStarts, this.declarationOffsets.getInt(i)) + 1);
+            }
+
+            return new NavigationMap(this.targetClassNames.toArray(new String[0]), this.targetMembers.toArray(new String[0]),
+                    rangeStarts, rangeLengths, rangeTargets, declarationLines);
+        }
+
+        private static int getLineIndex(IntArrayList lineStarts, int offset) {
+            int low = 0;
+            int high = lineStarts.size() - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (lineStarts.getInt(middle) <= offset)
+                    low = middle;
+                else
+                    high = middle - 1;
+            }
+
+            return low;
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Appends all files deflated into a few large segment files instead of writing one file per class. A new segment is
+ * started once the current one reaches {@link #MAX_SEGMENT_SIZE}, so that every segment can be memory mapped as a
+ * whole. The segments are mapped for reading when the store is opened, records appended afterwards are read through
+ * the channel. The index is rebuilt from the record headers when the store is opened, a record whose checksum doesn't
+ * match cuts off the rest of its segment.
+ * <br>
+ * Replaced records are dropped by a background compaction which copies all live records into the segments of a new
+ * generation. A new generation is written to temporary files which are renamed once they're complete, the first
+ * segment last. A generation without a first segment is therefore incomplete and ignored.
+ * <br>
+ * Files are only written to disk on demand by {@link #getPath(String)}. Files of an existing
+ * {@code decompiled-files} folder are imported when the store is created.
+ * <pre>
+ * segment: decompiled-generation-number.pack
+ * record: keyLength, key, rawLength, compressedLength, crc32, compressedData
+ * </pre>
+ */
+public class PackStore implements DecompilationStore {
+
+    private static final String SEGMENT_PREFIX = "decompiled-";
+    private static final String SEGMENT_EXTENSION = ".pack";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    /**
+     * a mapping can't be larger than 2 GB
+     */
+    private static final long MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+    /**
+     * compaction only runs if at least this many bytes and half of the segments are occupied by replaced records
+     */
+    private static final long MIN_COMPACTION_SIZE = 8 * 1024 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final Path directory;
+    private final DirectoryStore materializedFiles;
+    private final Executor compactionExecutor;
+    private final long maxSegmentSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private Map<String, Record> index = new HashMap<>();
+    private int generation;
+    private List<Segment> segments = new ArrayList<>();
+    private long size;
+    private long replacedSize;
+
+    /**
+     * @param materializedFiles the store files are written to when a path is requested
+     */
+    public PackStore(@Nonnull Path directory, @Nonnull DirectoryStore materializedFiles, @Nonnull Executor compactionExecutor) {
+        this(directory, materializedFiles, compactionExecutor, MAX_SEGMENT_SIZE);
+    }
+
+    PackStore(@Nonnull Path directory, @Nonnull DirectoryStore materializedFiles, @Nonnull Executor compactionExecutor,
+              long maxSegmentSize) {
+        this.directory = directory;
+        this.materializedFiles = materializedFiles;
+        this.compactionExecutor = compactionExecutor;
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public void load() throws IOException {
+        boolean created;
+        this.lock.writeLock().lock();
+        try {
+            //only the newest complete generation is valid, older ones are left over from compactions. Temporary files
+            //and incomplete generations are left over from compactions which didn't finish
+            Map<Integer, SortedMap<Integer, Path>> generations = new HashMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*")) {
+                for (Path segment : stream) {
+                    String fileName = segment.getFileName().toString();
+                    if (fileName.endsWith(TEMP_EXTENSION)) {
+                        Files.deleteIfExists(segment);
+                        continue;
+                    }
+                    if (!fileName.endsWith(SEGMENT_EXTENSION))
+                        continue;
+
+                    int[] segmentId = getSegmentId(segment);
+                    if (segmentId == null)
+                        continue;
+                    generations.computeIfAbsent(segmentId[0], k -> new TreeMap<>()).put(segmentId[1], segment);
+                }
+            }
+
+            created = true;
+            for (Map.Entry<Integer, SortedMap<Integer, Path>> entry : generations.entrySet()) {
+                if (entry.getValue().containsKey(0) && (created || entry.getKey() > this.generation)) {
+                    this.generation = entry.getKey();
+                    created = false;
+                }
+            }
+            for (Map.Entry<Integer, SortedMap<Integer, Path>> entry : generations.entrySet()) {
+                if (created || entry.getKey() != this.generation) {
+                    for (Path segment : entry.getValue().values())
+                        Files.deleteIfExists(segment);
+                }
+            }
+
+            if (created) {
+                this.segments.add(new Segment(openSegment(this.generation, 0)));
+            } else {
+                int number = 0;
+                for (Map.Entry<Integer, Path> entry : generations.get(this.generation).entrySet()) {
+                    //segments after a missing one can't be trusted
+                    if (entry.getKey() != number) {
+                        Files.deleteIfExists(entry.getValue());
+                        continue;
+                    }
+
+                    this.segments.add(loadSegment(number++));
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        if (created)
+            importMaterializedFiles();
+
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Opens the given segment of the current generation and adds its records to the index
+     */
+    private Segment loadSegment(int number) throws IOException {
+        FileChannel channel = openSegment(this.generation, number);
+        long segmentSize = channel.size();
+        CRC32 crc = new CRC32();
+
+        long position = 0;
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            int keyLength = readFully(channel, position, 4).getInt();
+            if (keyLength < 0 || position + RECORD_HEADER_SIZE + keyLength > segmentSize)
+                break;
+
+            ByteBuffer header = readFully(channel, position, RECORD_HEADER_SIZE + keyLength);
+            byte[] key = new byte[keyLength];
+            header.position(4);
+            header.get(key);
+            int rawLength = header.getInt();
+            int compressedLength = header.getInt();
+            int checksum = header.getInt();
+            if (compressedLength < 0 || position + RECORD_HEADER_SIZE + keyLength + compressedLength > segmentSize)
+                break;
+
+            crc.reset();
+            crc.update(header.array(), 0, RECORD_HEADER_SIZE + keyLength - 4);
+            crc.update(readFully(channel, position + RECORD_HEADER_SIZE + keyLength, compressedLength));
+            if ((int) crc.getValue() != checksum)
+                break;
+
+            Record record = new Record(number, position, RECORD_HEADER_SIZE + keyLength, rawLength, compressedLength);
+            Record old = this.index.put(new String(key, StandardCharsets.UTF_8), record);
+            if (old != null)
+                this.replacedSize += old.getLength();
+            position += record.getLength();
+        }
+
+        //the game was most likely closed while writing the last record, or the segment was corrupted
+        if (position < segmentSize) {
+            TotalDebug.LOGGER.warn("Truncating incomplete or corrupted records at the end of {}", getSegmentPath(this.generation, number));
+            channel.truncate(position);
+        }
+
+        this.size += position;
+        //mapped files can't be truncated on Windows, so the segment is only mapped afterwards
+        return new Segment(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, position), position);
+    }
+
+    /**
+     * Copies the files of the {@code decompiled-files} folder into a newly created store, so that switching to the
+     * store doesn't require decompiling everything again. The files are kept as materialized files.
+     */
+    private void importMaterializedFiles() throws IOException {
+        List<String> fileNames = this.materializedFiles.getFileNames();
+        if (fileNames.isEmpty())
+            return;
+
+        int imported = 0;
+        for (String fileName : fileNames) {
+            byte[] data = this.materializedFiles.read(fileName);
+            if (data == null)
+                continue;
+
+            append(fileName, data);
+            imported++;
+        }
+
+        TotalDebug.LOGGER.info("Imported {} decompiled files into the decompiled files pack", imported);
+    }
+
+    @Override
+    public boolean contains(@Nonnull String fileName) {
+        this.lock.readLock().lock();
+        try {
+            return this.index.containsKey(fileName);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getFileNames() {
+        this.lock.readLock().lock();
+        try {
+            return new ArrayList<>(this.index.keySet());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public byte[] read(@Nonnull String fileName) {
+        byte[] compressed;
+        Record record;
+
+        this.lock.readLock().lock();
+        try {
+            record = this.index.get(fileName);
+            if (record == null)
+                return null;
+
+            compressed = new byte[record.compressedLength];
+            this.segments.get(record.segment).read(record.position + record.headerLength, record.compressedLength).get(compressed);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to read decompiled files pack", e);
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        byte[] data = new byte[record.rawLength];
+        try {
+            int length = 0;
+            while (length < data.length && !inflater.finished())
+                length += inflater.inflate(data, length, data.length - length);
+        } catch (DataFormatException e) {
+            TotalDebug.LOGGER.error("Corrupted decompiled files pack entry " + fileName, e);
+            return null;
+        }
+
+        return data;
+    }
+
+    @Override
+    public void write(@Nonnull String fileName, @Nonnull byte[] data) throws IOException {
+        append(fileName, data);
+
+        //keep files which were handed out to other programs up to date
+        if (this.materializedFiles.contains(fileName))
+            this.materializedFiles.write(fileName, data);
+
+        scheduleCompactionIfNeeded();
+    }
+
+    private void append(String fileName, byte[] data) throws IOException {
+        byte[] key = fileName.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = compress(data);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + key.length + compressed.length);
+        buffer.putInt(key.length).put(key).putInt(data.length).putInt(compressed.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        crc.update(compressed);
+        buffer.putInt((int) crc.getValue()).put(compressed);
+        buffer.flip();
+
+        this.lock.writeLock().lock();
+        try {
+            Segment segment = this.segments.get(this.segments.size() - 1);
+            if (segment.size > 0 && segment.size + buffer.limit() > this.maxSegmentSize) {
+                segment = new Segment(openSegment(this.generation, this.segments.size()));
+                this.segments.add(segment);
+            }
+
+            long position = segment.append(buffer);
+            this.size += buffer.limit();
+            Record old = this.index.put(fileName, new Record(this.segments.size() - 1, position, RECORD_HEADER_SIZE + key.length, data.length, compressed.length));
+            if (old != null)
+                this.replacedSize += old.getLength();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Path getPath(@Nonnull String fileName) throws IOException {
+        if (!this.materializedFiles.contains(fileName)) {
+            byte[] data = read(fileName);
+            if (data != null)
+                this.materializedFiles.write(fileName, data);
+        }
+
+        return this.materializedFiles.getPath(fileName);
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        this.lock.readLock().lock();
+        try {
+            if (this.replacedSize < MIN_COMPACTION_SIZE || this.replacedSize * 2 < this.size)
+                return;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        if (!this.compacting.compareAndSet(false, true))
+            return;
+
+        this.compactionExecutor.execute(() -> {
+            try {
+                compact();
+            } catch (Throwable t) {
+                TotalDebug.LOGGER.error("Unable to compact decompiled files pack", t);
+            } finally {
+                this.compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Copies all live records into the segments of a new generation. Most of the copying happens without blocking
+     * readers and writers, only records written in the meantime are copied while holding the lock.
+     */
+    private void compact() throws IOException {
+        Map<String, Record> snapshot;
+        long snapshotSize;
+        List<Segment> snapshotSegments;
+        int newGeneration;
+
+        this.lock.readLock().lock();
+        try {
+            snapshot = new HashMap<>(this.index);
+            snapshotSize = this.size;
+            snapshotSegments = this.segments;
+            newGeneration = this.generation + 1;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        List<FileChannel> newChannels = new ArrayList<>();
+        List<Segment> newSegments = new ArrayList<>();
+        Map<String, Record> newIndex = new HashMap<>(snapshot.size());
+        try {
+            newChannels.add(openTempSegment(newGeneration, 0));
+            long newSegmentSize = 0;
+            for (Map.Entry<String, Record> entry : snapshot.entrySet()) {
+                Record record = entry.getValue();
+                if (newSegmentSize > 0 && newSegmentSize + record.getLength() > this.maxSegmentSize) {
+                    newChannels.add(openTempSegment(newGeneration, newChannels.size()));
+                    newSegmentSize = 0;
+                }
+
+                newIndex.put(entry.getKey(), record.withPosition(newChannels.size() - 1, newSegmentSize));
+                newSegmentSize += copyRecord(snapshotSegments.get(record.segment), record, newChannels.get(newChannels.size() - 1), newSegmentSize);
+            }
+
+            this.lock.writeLock().lock();
+            try {
+                //copy records which were written during the compaction
+                for (Map.Entry<String, Record> entry : this.index.entrySet()) {
+                    Record record = entry.getValue();
+                    if (snapshot.get(entry.getKey()) == record)
+                        continue;
+
+                    if (newSegmentSize > 0 && newSegmentSize + record.getLength() > this.maxSegmentSize) {
+                        newChannels.add(openTempSegment(newGeneration, newChannels.size()));
+                        newSegmentSize = 0;
+                    }
+
+                    newIndex.put(entry.getKey(), record.withPosition(newChannels.size() - 1, newSegmentSize));
+                    newSegmentSize += copyRecord(this.segments.get(record.segment), record, newChannels.get(newChannels.size() - 1), newSegmentSize);
+                }
+
+                //the new generation only gets its final names once it's completely on disk. The first segment is
+                //renamed last, it marks the generation as complete
+                for (FileChannel channel : newChannels) {
+                    channel.force(true);
+                    channel.close();
+                }
+                int newSegmentCount = newChannels.size();
+                for (int i = newSegmentCount - 1; i >= 0; i--)
+                    Files.move(getTempSegmentPath(newGeneration, i), getSegmentPath(newGeneration, i), StandardCopyOption.ATOMIC_MOVE);
+                newChannels.clear();
+
+                try {
+                    for (int i = 0; i < newSegmentCount; i++) {
+                        FileChannel channel = openSegment(newGeneration, i);
+                        newSegments.add(new Segment(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), channel.size()));
+                    }
+                } catch (IOException e) {
+                    for (Segment segment : newSegments)
+                        segment.channel.close();
+                    Files.deleteIfExists(getSegmentPath(newGeneration, 0));
+                    throw e;
+                }
+
+                List<Segment> oldSegments = this.segments;
+                int oldGeneration = this.generation;
+
+                this.index = newIndex;
+                this.segments = newSegments;
+                this.generation = newGeneration;
+                this.size = 0;
+                for (Segment segment : newSegments)
+                    this.size += segment.size;
+                this.replacedSize = 0;
+
+                for (int i = 0; i < oldSegments.size(); i++) {
+                    oldSegments.get(i).channel.close();
+                    try {
+                        Files.deleteIfExists(getSegmentPath(oldGeneration, i));
+                    } catch (IOException e) {
+                        //mapped files can't be deleted on some platforms, the segment is deleted on the next load instead
+                    }
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } catch (Throwable t) {
+            for (int i = 0; i < newChannels.size(); i++) {
+                newChannels.get(i).close();
+                Files.deleteIfExists(getTempSegmentPath(newGeneration, i));
+            }
+            throw t;
+        }
+
+        TotalDebug.LOGGER.info("Compacted decompiled files pack from {} to {} bytes", snapshotSize, this.size);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1)
+                throw new EOFException();
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private FileChannel openSegment(int generation, int number) throws IOException {
+        return FileChannel.open(getSegmentPath(generation, number), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private FileChannel openTempSegment(int generation, int number) throws IOException {
+        return FileChannel.open(getTempSegmentPath(generation, number), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path getSegmentPath(int generation, int number) {
+        return this.directory.resolve(SEGMENT_PREFIX + generation + "-" + number + SEGMENT_EXTENSION);
+    }
+
+    private Path getTempSegmentPath(int generation, int number) {
+        return this.directory.resolve(SEGMENT_PREFIX + generation + "-" + number + SEGMENT_EXTENSION + TEMP_EXTENSION);
+    }
+
+    /**
+     * @return the generation and number of the given segment; {@code null} if it's not a segment file
+     */
+    @Nullable
+    private static int[] getSegmentId(Path segment) {
+        String fileName = segment.getFileName().toString();
+        String id = fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_EXTENSION.length());
+        int separator = id.indexOf('-');
+        if (separator == -1)
+            return null;
+
+        try {
+            return new int[]{Integer.parseInt(id.substring(0, separator)), Integer.parseInt(id.substring(separator + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int copyRecord(Segment source, Record record, FileChannel target, long targetPosition) throws IOException {
+        ByteBuffer data = source.read(record.position, record.getLength());
+        int written = 0;
+        while (data.hasRemaining())
+            written += target.write(data, targetPosition + written);
+
+        return record.getLength();
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buffer = new byte[Math.max(64, data.length / 4)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        /**
+         * the segment as it was when it was opened, never remapped to not keep several mappings of the same file alive
+         */
+        private final MappedByteBuffer mapped;
+        private long size;
+
+        private Segment(FileChannel channel) {
+            this(channel, null, 0);
+        }
+
+        private Segment(FileChannel channel, @Nullable MappedByteBuffer mapped, long size) {
+            this.channel = channel;
+            this.mapped = mapped;
+            this.size = size;
+        }
+
+        /**
+         * @return the position the given buffer was written to
+         */
+        private long append(ByteBuffer buffer) throws IOException {
+            long position = this.size;
+            while (buffer.hasRemaining())
+                this.channel.write(buffer, position + buffer.position());
+
+            this.size += buffer.limit();
+            return position;
+        }
+
+        /**
+         * @return the given range, from the mapped segment if it covers the range and read through the channel
+         * otherwise
+         */
+        private ByteBuffer read(long position, int length) throws IOException {
+            if (this.mapped == null || position + length > this.mapped.capacity())
+                return readFully(this.channel, position, length);
+
+            ByteBuffer view = this.mapped.duplicate();
+            view.position((int) position);
+            view.limit((int) position + length);
+            return view;
+        }
+    }
+
+    private static final class Record {
+
+        private final int segment;
+        private final long position;
+        private final int headerLength;
+        private final int rawLength;
+        private final int compressedLength;
+
+        private Record(int segment, long position, int headerLength, int rawLength, int compressedLength) {
+            this.segment = segment;
+            this.position = position;
+            this.headerLength = headerLength;
+            this.rawLength = rawLength;
+            this.compressedLength = compressedLength;
+        }
+
+        private Record withPosition(int segment, long position) {
+            return new Record(segment, position, this.headerLength, this.rawLength, this.compressedLength);
+        }
+
+        private int getLength() {
+            return this.headerLength + this.compressedLength;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nonnull;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Full-text index over all decompiled sources. It combines two structures:
+ * <ul>
+ *     <li>an exact posting list of files for every identifier token. Tokens of a query which are enclosed by other
+ *     characters, e.g. {@code getBlockState} in {@code .getBlockState(}, have to appear as complete tokens in a
+ *     matching file.</li>
+ *     <li>a bloom filter over the trigrams of every file, sized by the amount of distinct trigrams in that file. Files
+ *     missing any trigram of the query are skipped.</li>
+ * </ul>
+ * False positives of the filters are removed when the candidates are scanned for the actual hits.
+ * <br>
+ * The index is persisted as an append-only log of {@code (fileName, filter, tokens)} records where later records
+ * replace earlier ones, the same way as the {@link CacheManifest}.
+ */
+public class SourceIndex {
+
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * with two hash functions, about 15% of the probes for a missing trigram hit a set bit. A query with n trigrams
+     * therefore only matches 0.15^n of the files which don't contain it.
+     */
+    private static final int FILTER_BITS_PER_TRIGRAM = 4;
+
+    private final Path path;
+
+    /**
+     * a file gets a new id whenever it's replaced, so that the postings stay sorted and never have to be searched for
+     * the old id. Replaced ids are dropped by the next compaction.
+     */
+    private final List<String> fileNames = new ArrayList<>();
+    private final List<long[]> filters = new ArrayList<>();
+    private final Object2IntMap<String> fileIds = new Object2IntOpenHashMap<>();
+    private final Map<String, IntArrayList> tokenPostings = new HashMap<>();
+    /**
+     * the current ids of all files
+     */
+    private final BitSet files = new BitSet();
+
+    private DataOutputStream out;
+
+    public SourceIndex(@Nonnull Path path) {
+        this.path = path;
+        this.fileIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * @return {@code false} if the index did not exist or was unreadable and has to be rebuilt using
+     * {@link #rebuild(DecompilationStore)}
+     */
+    public synchronized boolean load() {
+        boolean valid = false;
+        boolean truncated = false;
+        if (Files.exists(this.path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path)))) {
+                if (in.readInt() == FORMAT_VERSION) {
+                    valid = true;
+                    while (AppendOnlyLog.hasNextRecord(in)) {
+                        String fileName = in.readUTF();
+                        long[] filter = new long[in.readInt()];
+                        for (int i = 0; i < filter.length; i++)
+                            filter[i] = in.readLong();
+
+                        String[] tokens = new String[in.readInt()];
+                        for (int i = 0; i < tokens.length; i++)
+                            tokens[i] = in.readUTF();
+
+                        setFile(fileName, filter, tokens);
+                    }
+                }
+            } catch (EOFException e) {
+                //the game was most likely closed while writing the last record, it has to be cut off before appending
+                truncated = true;
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to read decompiled source index", e);
+                valid = false;
+            }
+        }
+
+        try {
+            if (!valid)
+                clear();
+            if (truncated || this.fileNames.isEmpty() || this.fileNames.size() > this.files.cardinality() * 2)
+                compact();
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.path, StandardOpenOption.APPEND)));
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to open decompiled source index", e);
+        }
+
+        return valid;
+    }
+
+    /**
+     * Indexes all sources in the given store
+     */
+    public void rebuild(@Nonnull DecompilationStore store) throws IOException {
+        for (String fileName : store.getFileNames()) {
+            if (!isIndexed(fileName))
+                continue;
+
+            byte[] source = store.read(fileName);
+            if (source != null)
+                update(fileName, new String(source, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return {@code true} if the given file is a complete source which belongs into the index; outlines and single
+     * methods are skipped
+     */
+    public static boolean isIndexed(@Nonnull String fileName) {
+        return fileName.endsWith(".java") && fileName.indexOf('#') == -1;
+    }
+
+    /**
+     * Adds or replaces the given source
+     */
+    public void update(@Nonnull String fileName, @Nonnull String source) {
+        String lowerCaseSource = toLowerCase(source);
+        long[] filter = createFilter(lowerCaseSource);
+        String[] tokens = getTokens(lowerCaseSource, false).toArray(new String[0]);
+
+        synchronized (this) {
+            setFile(fileName, filter, tokens);
+
+            if (this.out == null)
+                return;
+
+            try {
+                writeRecord(this.out, fileName, filter, tokens);
+                this.out.flush();
+            } catch (IOException e) {
+                TotalDebug.LOGGER.error("Unable to write decompiled source index", e);
+            }
+        }
+    }
+
+    /**
+     * @return the names of all files which might contain the given text, ignoring case. Queries without enclosed tokens
+     * and shorter than three characters match every file.
+     */
+    @Nonnull
+    public synchronized List<String> getCandidates(@Nonnull String query) {
+        String lowerCaseQuery = toLowerCase(query);
+        BitSet candidates = (BitSet) this.files.clone();
+        for (String token : getTokens(lowerCaseQuery, true)) {
+            IntArrayList postings = this.tokenPostings.get(token);
+            if (postings == null)
+                return new ArrayList<>();
+
+            BitSet tokenFiles = new BitSet();
+            for (int i = 0; i < postings.size(); i++)
+                tokenFiles.set(postings.getInt(i));
+            candidates.and(tokenFiles);
+        }
+
+        long[] trigrams = getTrigrams(lowerCaseQuery).toLongArray();
+        List<String> fileNames = new ArrayList<>();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            if (mightContainAll(this.filters.get(id), trigrams))
+                fileNames.add(this.fileNames.get(id));
+        }
+
+        return fileNames;
+    }
+
+    /**
+     * Finds all lines containing the given text, ignoring case. Only the candidates of the index are read from the
+     * given store.
+     *
+     * @param limit the maximum amount of hits
+     * @return the hits, sorted by file name and line
+     */
+    @Nonnull
+    public List<Hit> search(@Nonnull DecompilationStore store, @Nonnull String query, int limit) {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        List<String> candidates = getCandidates(query);
+        Collections.sort(candidates);
+
+        List<Hit> hits = new ArrayList<>();
+        for (String fileName : candidates) {
+            byte[] bytes = store.read(fileName);
+            if (bytes == null)
+                continue;
+
+            String source = new String(bytes, StandardCharsets.UTF_8);
+            String className = fileName.substring(0, fileName.length() - ".java".length());
+            int lineStart = 0;
+            for (int line = 1; lineStart <= source.length(); line++) {
+                int lineEnd = source.indexOf('\n', lineStart);
+                if (lineEnd == -1)
+                    lineEnd = source.length();
+
+                String text = source.substring(lineStart, lineEnd);
+                if (text.toLowerCase(Locale.ROOT).contains(lowerCaseQuery)) {
+                    hits.add(new Hit(className, line, text.trim()));
+                    if (hits.size() >= limit)
+                        return hits;
+                }
+
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        return hits;
+    }
+
+    private void setFile(String fileName, long[] filter, String[] tokens) {
+        int oldId = this.fileIds.getInt(fileName);
+        if (oldId != -1) {
+            this.files.clear(oldId);
+            this.filters.set(oldId, null);
+        }
+
+        int id = this.fileNames.size();
+        this.fileNames.add(fileName);
+        this.filters.add(filter);
+        this.fileIds.put(fileName, id);
+        this.files.set(id);
+        for (String token : tokens)
+            this.tokenPostings.computeIfAbsent(token, k -> new IntArrayList()).add(id);
+    }
+
+    /**
+     * Converted char by char, so that the trigrams and tokens of a source and a query are created the same way
+     */
+    private static String toLowerCase(String text) {
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(text.charAt(i));
+        return new String(chars);
+    }
+
+    /**
+     * @param enclosedOnly whether only tokens which are preceded and followed by another character in the given text
+     *                     are returned. The first and last token of a query might only be part of a token in a file.
+     * @return the distinct identifier tokens of the given text
+     */
+    private static Set<String> getTokens(String text, boolean enclosedOnly) {
+        Set<String> tokens = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean identifierPart = i < text.length() && Character.isJavaIdentifierPart(text.charAt(i));
+            if (identifierPart && start == -1) {
+                start = i;
+            } else if (!identifierPart && start != -1) {
+                if (!enclosedOnly || (start > 0 && i < text.length()))
+                    tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    private static LongOpenHashSet getTrigrams(String text) {
+        LongOpenHashSet trigrams = new LongOpenHashSet();
+        for (int i = 0; i + 2 < text.length(); i++)
+            trigrams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+        return trigrams;
+    }
+
+    private static long[] createFilter(String lowerCaseSource) {
+        LongOpenHashSet trigrams = getTrigrams(lowerCaseSource);
+        long[] filter = new long[Math.max(1, (trigrams.size() * FILTER_BITS_PER_TRIGRAM + 63) / 64)];
+        for (LongIterator iterator = trigrams.iterator(); iterator.hasNext(); ) {
+            long hash = hash(iterator.nextLong());
+            setBit(filter, (int) hash);
+            setBit(filter, (int) (hash >>> 32));
+        }
+
+        return filter;
+    }
+
+    private static boolean mightContainAll(long[] filter, long[] trigrams) {
+        for (long trigram : trigrams) {
+            long hash = hash(trigram);
+            if (!isBitSet(filter, (int) hash) || !isBitSet(filter, (int) (hash >>> 32)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static void setBit(long[] filter, int hash) {
+        int bit = Integer.remainderUnsigned(hash, filter.length * 64);
+        filter[bit >>> 6] |= 1L << bit;
+    }
+
+    private static boolean isBitSet(long[] filter, int hash) {
+        int bit = Integer.remainderUnsigned(hash, filter.length * 64);
+        return (filter[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    /**
+     * the finalizer of MurmurHash3, both halves of the result are used as independent hashes
+     */
+    private static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private void clear() {
+        this.fileNames.clear();
+        this.filters.clear();
+        this.fileIds.clear();
+        this.tokenPostings.clear();
+        this.files.clear();
+    }
+
+    /**
+     * Drops replaced files and rewrites the index so that it only contains the current files
+     */
+    private void compact() throws IOException {
+        int[] newIds = new int[this.fileNames.size()];
+        Arrays.fill(newIds, -1);
+        List<String> fileNames = new ArrayList<>(this.files.cardinality());
+        List<long[]> filters = new ArrayList<>(this.files.cardinality());
+        for (int id = this.files.nextSetBit(0); id >= 0; id = this.files.nextSetBit(id + 1)) {
+            newIds[id] = fileNames.size();
+            fileNames.add(this.fileNames.get(id));
+            filters.add(this.filters.get(id));
+        }
+
+        //the tokens of every file have to be collected from the postings first
+        List<List<String>> fileTokens = new ArrayList<>(fileNames.size());
+        for (int i = 0; i < fileNames.size(); i++)
+            fileTokens.add(new ArrayList<>());
+        for (Iterator<Map.Entry<String, IntArrayList>> iterator = this.tokenPostings.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, IntArrayList> entry = iterator.next();
+            IntArrayList postings = new IntArrayList();
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                int newId = newIds[entry.getValue().getInt(i)];
+                if (newId == -1)
+                    continue;
+
+                postings.add(newId);
+                fileTokens.get(newId).add(entry.getKey());
+            }
+
+            if (postings.isEmpty())
+                iterator.remove();
+            else
+                entry.setValue(postings);
+        }
+
+        this.fileNames.clear();
+        this.fileNames.addAll(fileNames);
+        this.filters.clear();
+        this.filters.addAll(filters);
+        this.fileIds.clear();
+        this.files.clear();
+        for (int id = 0; id < fileNames.size(); id++) {
+            this.fileIds.put(fileNames.get(id), id);
+            this.files.set(id);
+        }
+
+        Path tempFile = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            for (int id = 0; id < fileNames.size(); id++)
+                writeRecord(out, fileNames.get(id), filters.get(id), fileTokens.get(id).toArray(new String[0]));
+        }
+
+        Files.move(tempFile, this.path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeRecord(DataOutputStream out, String fileName, long[] filter, String[] tokens) throws IOException {
+        out.writeUTF(fileName);
+        out.writeInt(filter.length);
+        for (long bits : filter)
+            out.writeLong(bits);
+        out.writeInt(tokens.length);
+        for (String token : tokens)
+            out.writeUTF(token);
+    }
+
+    public static class Hit {
+
+        private final String className;
+        private final int line;
+        private final String text;
+
+        public Hit(String className, int line, String text) {
+            this.className = className;
+            this.line = line;
+            this.text = text;
+        }
+
+        /**
+         * @return the name of the decompiled file without its extension
+         */
+        public String getClassName() {
+            return this.className;
+        }
+
+        /**
+         * @return the line in the decompiled file, starting at 1
+         */
+        public int getLine() {
+            return this.line;
+        }
+
+        /**
+         * @return the trimmed content of the line
+         */
+        public String getText() {
+            return this.text;
+        }
+    }
+}
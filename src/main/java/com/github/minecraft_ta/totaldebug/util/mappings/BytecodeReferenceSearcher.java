@@ -1,14 +1,22 @@
 package com.github.minecraft_ta.totaldebug.util.mappings;
 
 import com.github.minecraft_ta.totaldebug.TotalDebug;
-import net.minecraft.launchwrapper.LaunchClassLoader;
+import com.github.minecraft_ta.totaldebug.util.StringTable;
+import com.github.minecraft_ta.totaldebug.util.metrics.Histogram;
+import com.github.minecraft_ta.totaldebug.util.metrics.Metrics;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class BytecodeReferenceSearcher {
@@ -18,30 +26,34 @@ public class BytecodeReferenceSearcher {
 
     private static boolean RUNNING = false;
 
+    private static final Histogram SEARCH_TIME = Metrics.histogram("search.references");
+    private static final LongAdder SCANNED_CLASSES = Metrics.counter("search.scanned_classes");
+
     /**
      * @param searchMethod true if you want to search for methods; false otherwise
      */
     @Nullable
-    public static CompletableFuture<Pair<Collection<String>, Integer>> findReferences(String signature, boolean searchMethod) {
+    public static CompletableFuture<Pair<ReferenceSearchResults, Integer>> findReferences(String signature, boolean searchMethod) {
         if (RUNNING)
             return null;
 
         RUNNING = true;
 
         return CompletableFuture.supplyAsync(() -> {
+            long startTime = System.nanoTime();
             try {
                 List<Class<?>> allClasses = getFilteredClassesList();
 
                 if (allClasses.isEmpty()) {
                     RUNNING = false;
-                    return Pair.of(Collections.emptyList(), 0);
+                    return Pair.of(ReferenceSearchResults.EMPTY, 0);
                 }
 
                 int partSize = allClasses.size() / POOL_SIZE;
                 if (allClasses.size() < POOL_SIZE)
                     partSize = allClasses.size();
 
-                List<Callable<List<String>>> tasks = new ArrayList<>(POOL_SIZE);
+                List<Callable<InternalRemappingContext>> tasks = new ArrayList<>(POOL_SIZE);
 
                 //create tasks
                 for (int i = 0; i < (allClasses.size() < POOL_SIZE ? 1 : POOL_SIZE); i++) {
@@ -54,33 +66,66 @@ public class BytecodeReferenceSearcher {
 
                     int finalEndIndex = endIndex;
                     tasks.add(() -> {
-                        List<String> subResults = new ArrayList<>();
-                        InternalRemappingContext context = new InternalRemappingContext(subResults, signature, searchMethod);
+                        //every worker has its own table, so they don't have to synchronize on every hit
+                        InternalRemappingContext context = new InternalRemappingContext(signature, searchMethod);
 
                         for (int j = startIndex; j <= finalEndIndex; j++) {
                             Class<?> clazz = allClasses.get(j);
-                            context.currentClass = clazz;
+                            context.setCurrentClass(clazz);
 
                             //remap and search
                             RemappingUtil.getRemappedClass(clazz, context);
                         }
 
-                        return subResults;
+                        return context;
                     });
                 }
 
-                //execute tasks and merge results
-                Set<String> results = new HashSet<>();
-                for (Future<List<String>> future : EXECUTOR.invokeAll(tasks)) {
-                    results.addAll(future.get());
+                //execute tasks and merge the tables and results, one result per owner, method and line
+                StringTable table = new StringTable();
+                Long2IntMap ownerMethodIds = new Long2IntOpenHashMap();
+                ownerMethodIds.defaultReturnValue(-1);
+                LongSet seen = new LongOpenHashSet();
+                IntList owners = new IntArrayList();
+                IntList methods = new IntArrayList();
+                IntList lines = new IntArrayList();
+                IntList instructionIndices = new IntArrayList();
+                for (Future<InternalRemappingContext> future : EXECUTOR.invokeAll(tasks)) {
+                    InternalRemappingContext context = future.get();
+                    int[] tableIds = new int[context.table.size()];
+                    for (int j = 0; j < tableIds.length; j++)
+                        tableIds[j] = table.intern(context.table.get(j));
+
+                    IntList subResults = context.results;
+                    for (int j = 0; j < subResults.size(); j += 4) {
+                        int owner = tableIds[subResults.getInt(j)];
+                        int method = tableIds[subResults.getInt(j + 1)];
+                        int line = subResults.getInt(j + 2);
+
+                        long ownerMethod = ((long) owner << 32) | method;
+                        int ownerMethodId = ownerMethodIds.get(ownerMethod);
+                        if (ownerMethodId == -1) {
+                            ownerMethodId = ownerMethodIds.size();
+                            ownerMethodIds.put(ownerMethod, ownerMethodId);
+                        }
+                        if (!seen.add(((long) ownerMethodId << 32) | (line & 0xFFFFFFFFL)))
+                            continue;
+
+                        owners.add(owner);
+                        methods.add(method);
+                        lines.add(line);
+                        instructionIndices.add(subResults.getInt(j + 3));
+                    }
                 }
 
                 RUNNING = false;
 
-                return Pair.of(results, allClasses.size());
+                SEARCH_TIME.recordSince(startTime);
+                SCANNED_CLASSES.add(allClasses.size());
+                return Pair.of(new ReferenceSearchResults(table, owners.toIntArray(), methods.toIntArray(), lines.toIntArray(), instructionIndices.toIntArray()), allClasses.size());
             } catch (Exception e) {
                 e.printStackTrace();
-                return Pair.of(Collections.emptyList(), 0);
+                return Pair.of(ReferenceSearchResults.EMPTY, 0);
             }
         });
     }
@@ -104,10 +149,7 @@ public class BytecodeReferenceSearcher {
                 "netscape", "org.jetbrains", "oshi", "scala", "org.relaxng", "org.groovy");
 
         try {
-            Field f = LaunchClassLoader.class.getDeclaredField("cachedClasses");
-            f.setAccessible(true);
-            return ((Map<String, Class<?>>) f.get(BytecodeReferenceSearcher.class.getClassLoader()))
-                    .values().stream()
+            return ClassUtil.getCachedClasses().values().stream()
                     .filter(c -> packageBlacklist.stream().noneMatch(s -> c.getName().startsWith(s)))
                     .collect(Collectors.toList());
         } catch (Throwable t) {
@@ -118,13 +160,23 @@ public class BytecodeReferenceSearcher {
 
     private static final class InternalRemappingContext extends RemappingUtil.RemappingContext {
 
-        private final List<String> results;
+        private static final int UNRESOLVED = -2;
+
+        private final StringTable table = new StringTable();
+        /**
+         * flat list of (owner id, method id, line, instruction index) quadruples
+         */
+        private final IntList results = new IntArrayList();
         private final String signatureToMatch;
 
         private Class<?> currentClass;
+        /**
+         * id of the {@code owner/Name} of the {@link #currentClass}; resolved when the first match is found, {@code -1}
+         * if the class has no mappings
+         */
+        private int currentOwnerId;
 
-        public InternalRemappingContext(List<String> results, String signatureToMatch, boolean method) {
-            this.results = results;
+        public InternalRemappingContext(String signatureToMatch, boolean method) {
             this.signatureToMatch = signatureToMatch;
             write = false;
             mapMethodInsn = method;
@@ -134,26 +186,38 @@ public class BytecodeReferenceSearcher {
             mapLocals = false;
         }
 
-        @Override
-        public void onMethodInsnMapping(@Nonnull String containedMethodName, @Nonnull String newMethodSignature) {
-            if (newMethodSignature.endsWith(signatureToMatch)) {
-                Class<?> foundClass = RemappingUtil.tryFindClassWithMappings(currentClass.getName());
-                if (foundClass == null)
-                    return;
+        public void setCurrentClass(Class<?> currentClass) {
+            this.currentClass = currentClass;
+            this.currentOwnerId = UNRESOLVED;
+        }
 
-                results.add(foundClass.getName().replace('.', '/') + "#" + containedMethodName);
-            }
+        @Override
+        public void onMethodInsnMapping(@Nonnull String containedMethodName, @Nonnull String newMethodSignature,
+                                        int line, int instructionIndex) {
+            if (newMethodSignature.endsWith(signatureToMatch))
+                addResult(containedMethodName, line, instructionIndex);
         }
 
         @Override
-        public void onFieldInsnMapping(@Nonnull String containedMethodName, @Nonnull String newFieldSignature) {
-            if (newFieldSignature.endsWith(signatureToMatch)) {
-                Class<?> foundClass = RemappingUtil.tryFindClassWithMappings(currentClass.getName());
-                if (foundClass == null)
-                    return;
+        public void onFieldInsnMapping(@Nonnull String containedMethodName, @Nonnull String newFieldSignature,
+                                       int line, int instructionIndex) {
+            if (newFieldSignature.endsWith(signatureToMatch))
+                addResult(containedMethodName, line, instructionIndex);
+        }
 
-                results.add(foundClass.getName().replace('.', '/') + "#" + containedMethodName);
+        private void addResult(String containedMethodName, int line, int instructionIndex) {
+            if (currentOwnerId == UNRESOLVED) {
+                Class<?> foundClass = RemappingUtil.tryFindClassWithMappings(currentClass.getName());
+                currentOwnerId = foundClass == null ? -1 : table.intern(foundClass.getName().replace('.', '/'));
             }
+
+            if (currentOwnerId == -1)
+                return;
+
+            results.add(currentOwnerId);
+            results.add(table.intern(containedMethodName));
+            results.add(line);
+            results.add(instructionIndex);
         }
     }
 }
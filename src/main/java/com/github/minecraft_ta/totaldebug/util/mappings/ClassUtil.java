@@ -1,25 +1,51 @@
 package com.github.minecraft_ta.totaldebug.util.mappings;
 
 import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassBytesCache;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+import org.apache.commons.io.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.net.URL;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class ClassUtil {
 
+    private static Field cachedClassesField;
+    private static Method findLoadedClassMethod;
+
     private ClassUtil() {
     }
 
+    /**
+     * @return the transformed bytecode from the {@link ClassBytesCache} if the class was captured; the bytecode from
+     * the class file on disk otherwise
+     */
     @Nullable
     public static byte[] getBytecode(Class<?> clazz) {
+        byte[] capturedBytecode = ClassBytesCache.get(clazz.getName());
+        if (capturedBytecode != null)
+            return capturedBytecode;
+
         String codeSource = getClassCodeSourceName(clazz);
         if (codeSource == null)
             return null;
@@ -55,6 +81,214 @@ public class ClassUtil {
         }
     }
 
+    /**
+     * Nested, local and anonymous classes are decompiled into the source of their outer class, so a change to any of
+     * them has to change the cache key of that source as well.
+     *
+     * @return the bytecode of the given class followed by the bytecode of all classes nested in it; {@code null} if the
+     * bytecode of the given class could not be found
+     */
+    @Nullable
+    public static byte[] getBytecodeWithNestedClasses(Class<?> clazz) {
+        byte[] bytecode = getBytecode(clazz);
+        if (bytecode == null)
+            return null;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Set<String> visited = new HashSet<>();
+        Deque<byte[]> queue = new ArrayDeque<>();
+        queue.add(bytecode);
+        while (!queue.isEmpty()) {
+            byte[] classBytes = queue.poll();
+            out.write(classBytes, 0, classBytes.length);
+
+            ClassReader reader = new ClassReader(classBytes);
+            String prefix = reader.getClassName() + "$";
+            reader.accept(new ClassVisitor(Opcodes.ASM5) {
+                @Override
+                public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                    //the attribute also lists the outer classes and all other nested classes which are referenced
+                    if (!name.startsWith(prefix) || !visited.add(name))
+                        return;
+
+                    String className = name.replace('/', '.');
+                    byte[] nestedBytes = ClassBytesCache.get(className);
+                    if (nestedBytes == null)
+                        nestedBytes = readClassFile(className);
+                    if (nestedBytes != null)
+                        queue.add(nestedBytes);
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Finds the class file of the given class without loading the class. Minecraft classes are looked up by their
+     * obfuscated name if they can't be found by their real name.
+     *
+     * @param className the binary name of the class
+     * @return the location of the class file; {@code null} if it could not be found
+     */
+    @Nullable
+    public static URL findClassFile(@Nonnull String className) {
+        String internalName = className.replace('.', '/');
+        ClassLoader classLoader = ClassUtil.class.getClassLoader();
+        URL resource = classLoader.getResource(internalName + ".class");
+        if (resource != null)
+            return resource;
+
+        String obfuscatedName = RemappingUtil.getObfuscatedClassName(internalName);
+        return obfuscatedName == null ? null : classLoader.getResource(obfuscatedName + ".class");
+    }
+
+    /**
+     * @param className the binary name of the class
+     * @return the bytecode of the class file found by {@link #findClassFile(String)}; {@code null} if there's none
+     */
+    @Nullable
+    public static byte[] readClassFile(@Nonnull String className) {
+        URL classFile = findClassFile(className);
+        if (classFile == null)
+            return null;
+
+        try (InputStream inputStream = classFile.openStream()) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            TotalDebug.LOGGER.error("Unable to read class file of " + className, e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the given class without initializing it, so that no static initializer runs on the calling thread.
+     *
+     * @param className the binary name of the class
+     * @return the class; {@code null} if it doesn't exist or can't be loaded
+     */
+    @Nullable
+    public static Class<?> loadClass(@Nonnull String className) {
+        try {
+            return Class.forName(className, false, ClassUtil.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the given class without loading it. Classes loaded by the {@link LaunchClassLoader} are found in its
+     * cache, classes from excluded packages in its parent.
+     *
+     * @param className the binary name of the class
+     * @return the class; {@code null} if it's not loaded yet
+     */
+    @Nullable
+    public static Class<?> getLoadedClass(@Nonnull String className) {
+        ClassLoader classLoader = ClassUtil.class.getClassLoader();
+        try {
+            if (classLoader instanceof LaunchClassLoader) {
+                Class<?> clazz = getCachedClasses().get(className);
+                if (clazz != null)
+                    return clazz;
+
+                classLoader = classLoader.getParent();
+            }
+
+            if (findLoadedClassMethod == null) {
+                findLoadedClassMethod = ClassLoader.class.getDeclaredMethod("findLoadedClass", String.class);
+                findLoadedClassMethod.setAccessible(true);
+            }
+
+            return (Class<?>) findLoadedClassMethod.invoke(classLoader, className);
+        } catch (ReflectiveOperationException e) {
+            TotalDebug.LOGGER.error("Unable to look up loaded class " + className, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return all classes loaded by the {@link LaunchClassLoader} so far, keyed by their binary name. The map is the
+     * live cache of the class loader and must not be modified; empty if this mod wasn't loaded by a
+     * {@link LaunchClassLoader}.
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    public static Map<String, Class<?>> getCachedClasses() throws ReflectiveOperationException {
+        ClassLoader classLoader = ClassUtil.class.getClassLoader();
+        if (!(classLoader instanceof LaunchClassLoader))
+            return Collections.emptyMap();
+
+        if (cachedClassesField == null) {
+            cachedClassesField = LaunchClassLoader.class.getDeclaredField("cachedClasses");
+            cachedClassesField.setAccessible(true);
+        }
+
+        return (Map<String, Class<?>>) cachedClassesField.get(classLoader);
+    }
+
+    /**
+     * Nested, local and anonymous classes as well as lambda classes don't have their own source file. They are part of
+     * the source of their top level class.
+     *
+     * @return the top level class the given class is declared in; the given class itself if it is a top level class
+     */
+    @Nonnull
+    public static Class<?> getTopLevelClass(@Nonnull Class<?> clazz) {
+        Class<?> topLevelClass = clazz;
+        try {
+            Class<?> enclosingClass;
+            while ((enclosingClass = topLevelClass.getEnclosingClass()) != null)
+                topLevelClass = enclosingClass;
+        } catch (LinkageError | SecurityException e) {
+            //some enclosing class failed to load, fall back to the name below
+        }
+
+        //lambda classes (Foo$$Lambda$1) don't have an enclosing class
+        if (topLevelClass == clazz && clazz.isSynthetic()) {
+            int index = clazz.getName().indexOf('$');
+            if (index > 0) {
+                try {
+                    return Class.forName(clazz.getName().substring(0, index), false, clazz.getClassLoader());
+                } catch (ClassNotFoundException | LinkageError e) {
+                    return clazz;
+                }
+            }
+        }
+
+        return topLevelClass;
+    }
+
+    /**
+     * @return the smallest line number in the line number tables of the given class; {@code -1} if the class doesn't
+     * have any line numbers
+     */
+    public static int getFirstLineNumber(@Nonnull Class<?> clazz) {
+        byte[] bytecode;
+        try {
+            bytecode = getBytecode(clazz);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+        if (bytecode == null)
+            return -1;
+
+        int[] firstLine = {Integer.MAX_VALUE};
+        new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM5) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        firstLine[0] = Math.min(firstLine[0], line);
+                    }
+                };
+            }
+        }, ClassReader.SKIP_FRAMES);
+
+        return firstLine[0] == Integer.MAX_VALUE ? -1 : firstLine[0];
+    }
+
     @Nullable
     public static String getClassCodeSourceName(Class<?> clazz) {
         ProtectionDomain protectionDomain = clazz.getProtectionDomain();
@@ -0,0 +1,84 @@
+package com.github.minecraft_ta.totaldebug.util.mappings;
+
+import com.github.minecraft_ta.totaldebug.util.StringTable;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The results of a {@link BytecodeReferenceSearcher} run. The {@code owner/Name} and the method of every result are
+ * stored as separate ids into a shared {@link StringTable}, together with the source line and instruction index of the
+ * hit.
+ */
+public class ReferenceSearchResults {
+
+    public static final ReferenceSearchResults EMPTY = new ReferenceSearchResults(new StringTable(), new int[0], new int[0], new int[0], new int[0]);
+
+    private final StringTable table;
+    private final int[] owners;
+    private final int[] methods;
+    private final int[] lines;
+    private final int[] instructionIndices;
+
+    public ReferenceSearchResults(@Nonnull StringTable table, @Nonnull int[] owners, @Nonnull int[] methods,
+                                  @Nonnull int[] lines, @Nonnull int[] instructionIndices) {
+        this.table = table;
+        this.owners = owners;
+        this.methods = methods;
+        this.lines = lines;
+        this.instructionIndices = instructionIndices;
+    }
+
+    /**
+     * @return the table containing all owners and methods
+     */
+    @Nonnull
+    public StringTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * @return the id of the {@code owner/Name} string of the result at the given index
+     */
+    public int getOwnerId(int index) {
+        return this.owners[index];
+    }
+
+    /**
+     * @return the id of the name of the method containing the result at the given index
+     */
+    public int getMethodId(int index) {
+        return this.methods[index];
+    }
+
+    @Nonnull
+    public String getOwner(int index) {
+        return this.table.get(this.owners[index]);
+    }
+
+    @Nonnull
+    public String getMethod(int index) {
+        return this.table.get(this.methods[index]);
+    }
+
+    /**
+     * @return the source line of the result at the given index; -1 if the class has no line numbers
+     */
+    public int getLine(int index) {
+        return this.lines[index];
+    }
+
+    /**
+     * @return the index of the instruction in the containing method of the result at the given index
+     */
+    public int getInstructionIndex(int index) {
+        return this.instructionIndices[index];
+    }
+
+    public int size() {
+        return this.owners.length;
+    }
+
+    public boolean isEmpty() {
+        return this.owners.length == 0;
+    }
+}
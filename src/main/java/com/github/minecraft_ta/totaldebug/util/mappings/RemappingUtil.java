@@ -1,12 +1,16 @@
 package com.github.minecraft_ta.totaldebug.util.mappings;
 
 import com.github.minecraft_ta.totaldebug.TotalDebug;
+import com.github.minecraft_ta.totaldebug.util.ProcyonDecompiler;
+import com.github.minecraft_ta.totaldebug.util.bytecode.ClassBytesCache;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
 import org.objectweb.asm.tree.*;
 
 import javax.annotation.Nonnull;
@@ -18,6 +22,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 public class RemappingUtil {
 
@@ -26,6 +32,15 @@ public class RemappingUtil {
      */
     private static final Map<String, Pair<String, Map<String, String>>> mcpMappings = new HashMap<>();
     private static final Map<String, String> forgeMappings = new HashMap<>();
+    /**
+     * real name -> obfuscated name
+     */
+    private static final Map<String, String> obfuscatedClassNames = new HashMap<>();
+    private static final Remapper HEADER_REMAPPER = new HeaderRemapper();
+    /**
+     * checksum of the loaded mapping files
+     */
+    private static long mappingsVersion;
 
     /**
      * Remaps all function, field and class references that are obfuscated in this class to their non-obfuscated names.
@@ -51,7 +66,10 @@ public class RemappingUtil {
         if (codeSource == null)
             return null;
 
-        Pair<String, Map<String, String>> mappedPair = mcpMappings.get(codeSource.substring(0, codeSource.length() - 6));
+        //captured bytecode was already deobfuscated to searge names by FML, only the forge mappings apply
+        Pair<String, Map<String, String>> mappedPair = ClassBytesCache.contains(clazz.getName()) ?
+                null :
+                mcpMappings.get(codeSource.substring(0, codeSource.length() - 6));
 
         Map<String, String> attributeMappings = null;
         if (mappedPair != null) {
@@ -118,11 +136,16 @@ public class RemappingUtil {
                 continue;
 
             ListIterator<AbstractInsnNode> iterator = instructions.iterator();
+            //line of the most recent line number node; -1 if the method has no line numbers
+            int currentLine = -1;
             //remap instructions
             while (iterator.hasNext()) {
+                int instructionIndex = iterator.nextIndex();
                 AbstractInsnNode insnNode = iterator.next();
 
-                if (context.mapMethodInsn && insnNode instanceof MethodInsnNode) { //method calls
+                if (insnNode instanceof LineNumberNode) {
+                    currentLine = ((LineNumberNode) insnNode).line;
+                } else if (context.mapMethodInsn && insnNode instanceof MethodInsnNode) { //method calls
                     MethodInsnNode methodInsnNode = (MethodInsnNode) insnNode;
                     Pair<String, Map<String, String>> pair = mcpMappings.get(methodInsnNode.owner);
 
@@ -169,7 +192,8 @@ public class RemappingUtil {
                     methodInsnNode.desc = newDesc == null ? remapTypeString(methodInsnNode.desc) : newDesc;
 
                     context.onMethodInsnMapping(method.name, actualOwnerClass + "." +
-                                                             methodInsnNode.name + methodInsnNode.desc);
+                                                             methodInsnNode.name + methodInsnNode.desc,
+                            currentLine, instructionIndex);
                 } else if (context.mapMethodInsn && insnNode instanceof InvokeDynamicInsnNode) {
                     //don't think we need this
                 } else if (context.mapFieldInsn && insnNode instanceof FieldInsnNode) { //field access
@@ -200,7 +224,8 @@ public class RemappingUtil {
 
                     fieldInsnNode.desc = remapTypeString(fieldInsnNode.desc);
 
-                    context.onFieldInsnMapping(method.name, actualOwnerClass + "." + fieldInsnNode.name);
+                    context.onFieldInsnMapping(method.name, actualOwnerClass + "." + fieldInsnNode.name,
+                            currentLine, instructionIndex);
                 } else if (context.mapTypeAndLdcInsn && insnNode instanceof TypeInsnNode) { //type instruction
                     TypeInsnNode typeInsnNode = (TypeInsnNode) insnNode;
                     Pair<String, Map<String, String>> typePair = mcpMappings.get(typeInsnNode.desc);
@@ -236,6 +261,67 @@ public class RemappingUtil {
         return writer;
     }
 
+    /**
+     * Remaps the declarations of the given class without loading it. Method bodies are skipped, so this is a lot
+     * cheaper than {@link #getRemappedClass(Class, RemappingContext)} and never runs any code of the class.
+     *
+     * @param className the binary name of the class
+     * @return the remapped bytecode without any method bodies; {@code null} if the class could not be found
+     */
+    @Nullable
+    public static byte[] getRemappedClassHeader(@Nonnull String className) {
+        byte[] bytecode = ClassBytesCache.get(className);
+        if (bytecode == null)
+            bytecode = ClassUtil.readClassFile(className);
+        if (bytecode == null)
+            return null;
+
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(bytecode).accept(new ClassRemapper(writer, HEADER_REMAPPER), ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param internalName the real internal name of a minecraft class
+     * @return the obfuscated internal name of the given class; {@code null} if the class is not obfuscated
+     */
+    @Nullable
+    public static String getObfuscatedClassName(@Nonnull String internalName) {
+        return obfuscatedClassNames.get(internalName);
+    }
+
+    /**
+     * Remaps obfuscated classes using the mcp mappings and searge member names using the forge mappings
+     */
+    private static final class HeaderRemapper extends Remapper {
+
+        @Override
+        public String map(String internalName) {
+            Pair<String, Map<String, String>> mappedPair = mcpMappings.get(internalName);
+            return mappedPair == null ? internalName : mappedPair.getLeft();
+        }
+
+        @Override
+        public String mapMethodName(String owner, String name, String descriptor) {
+            Pair<String, Map<String, String>> mappedPair = mcpMappings.get(owner);
+            String signature = mappedPair == null ? null : mappedPair.getRight().get(name + descriptor);
+            if (signature != null)
+                return signature.substring(0, signature.indexOf('('));
+
+            return forgeMappings.getOrDefault(name, name);
+        }
+
+        @Override
+        public String mapFieldName(String owner, String name, String descriptor) {
+            Pair<String, Map<String, String>> mappedPair = mcpMappings.get(owner);
+            String mappedName = mappedPair == null ? null : mappedPair.getRight().get(name);
+            if (mappedName != null)
+                return mappedName;
+
+            return forgeMappings.getOrDefault(name, name);
+        }
+    }
+
     /**
      * Remaps all types in a string. The string has to be in the java bytecode type format. The method searches for an
      * uppercase {@code L} followed by a {@code ;} at some point.
@@ -345,6 +431,10 @@ public class RemappingUtil {
             if (forgeMappingsStream == null || mcpMappingsStream == null)
                 throw new IllegalStateException("Forge or mcp mappings not found");
 
+            CRC32 checksum = new CRC32();
+            forgeMappingsStream = new CheckedInputStream(forgeMappingsStream, checksum);
+            mcpMappingsStream = new CheckedInputStream(mcpMappingsStream, checksum);
+
             IOUtils.readLines(forgeMappingsStream, StandardCharsets.UTF_8).stream()
                     .map(s -> s.split(","))
                     .forEach((ar) -> forgeMappings.put(ar[0], ar[1]));
@@ -379,6 +469,7 @@ public class RemappingUtil {
                                     (currentMap = new HashMap<>())
                             )
                     );
+                    obfuscatedClassNames.put(line.substring(indexOfFirstSpace + 1), line.substring(0, indexOfFirstSpace));
                 }
             }
 
@@ -397,11 +488,21 @@ public class RemappingUtil {
                     classMemberMap.put(k, v.substring(0, openingBracketIndex) + remapTypeString(v.substring(openingBracketIndex)));
                 });
             });
+
+            mappingsVersion = checksum.getValue();
+            ProcyonDecompiler.invalidateTypeCache();
         } catch (IOException e) {
             TotalDebug.LOGGER.error("Error while loading mappings", e);
         }
     }
 
+    /**
+     * @return a checksum of the loaded mappings which changes whenever the mapping files change
+     */
+    public static long getMappingsVersion() {
+        return mappingsVersion;
+    }
+
     public static class RemappingContext {
         protected boolean mapFields = true;
         protected boolean mapLocals = true;
@@ -413,11 +514,21 @@ public class RemappingUtil {
 
         protected boolean write = true;
 
-        public void onMethodInsnMapping(@Nonnull String containedMethodName, @Nonnull String newMethodSignature) {
+        /**
+         * @param line             the source line of the instruction; -1 if the method has no line numbers
+         * @param instructionIndex the index of the instruction in the method's instruction list
+         */
+        public void onMethodInsnMapping(@Nonnull String containedMethodName, @Nonnull String newMethodSignature,
+                                        int line, int instructionIndex) {
             //NO OP
         }
 
-        public void onFieldInsnMapping(@Nonnull String containedMethodName, @Nonnull String newFieldSignature) {
+        /**
+         * @param line             the source line of the instruction; -1 if the method has no line numbers
+         * @param instructionIndex the index of the instruction in the method's instruction list
+         */
+        public void onFieldInsnMapping(@Nonnull String containedMethodName, @Nonnull String newFieldSignature,
+                                       int line, int instructionIndex) {
             //NO OP
         }
     }
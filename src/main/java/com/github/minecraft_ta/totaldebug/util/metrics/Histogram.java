@@ -0,0 +1,116 @@
+package com.github.minecraft_ta.totaldebug.util.metrics;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed buckets. Recording a value only increments two {@link LongAdder}s, so it can
+ * be used on hot paths from any thread. Percentiles are approximated by the upper bound of the matching bucket.
+ */
+public class Histogram {
+
+    /**
+     * upper bounds of the buckets in microseconds, the last bucket is unbounded
+     */
+    private static final long[] BUCKET_BOUNDS = {
+            100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000
+    };
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(String name) {
+        this.name = name;
+        for (int i = 0; i < this.buckets.length; i++)
+            this.buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Records the time that passed since the given start time.
+     *
+     * @param startNanos a value previously returned by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * @param micros the latency in microseconds
+     */
+    public void record(long micros) {
+        int index = 0;
+        while (index < BUCKET_BOUNDS.length && micros > BUCKET_BOUNDS[index])
+            index++;
+
+        this.buckets[index].increment();
+        this.count.increment();
+        this.sum.add(micros);
+        this.max.accumulate(micros);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @param percentile a value between 0 and 1
+     * @return the upper bound of the bucket containing the given percentile in microseconds; the maximum if it's in
+     * the unbounded bucket
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0)
+            return 0;
+
+        long threshold = (long) Math.ceil(count * percentile);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            cumulative += this.buckets[i].sum();
+            if (cumulative >= threshold)
+                return Math.min(BUCKET_BOUNDS[i], this.max.get());
+        }
+
+        return this.max.get();
+    }
+
+    void reset() {
+        for (LongAdder bucket : this.buckets)
+            bucket.reset();
+        this.count.reset();
+        this.sum.reset();
+        this.max.reset();
+    }
+
+    @Nonnull
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        long count = getCount();
+        if (count == 0)
+            return this.name + ": count=0";
+
+        return this.name + ": count=" + count +
+               " avg=" + formatMicros(this.sum.sum() / count) +
+               " p50=" + formatMicros(getPercentile(0.5)) +
+               " p99=" + formatMicros(getPercentile(0.99)) +
+               " max=" + formatMicros(this.max.get());
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1_000)
+            return micros + "us";
+        if (micros < 1_000_000)
+            return String.format("%.1fms", micros / 1_000d);
+        return String.format("%.2fs", micros / 1_000_000d);
+    }
+}
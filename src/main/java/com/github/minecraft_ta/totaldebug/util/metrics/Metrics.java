@@ -0,0 +1,96 @@
+package com.github.minecraft_ta.totaldebug.util.metrics;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry for counters and latency histograms of the mod's own operations. Metrics are created once, usually in a
+ * static field, and can then be updated from any thread without locking.
+ */
+public class Metrics {
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "TotalDebug Metrics Logger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static ScheduledFuture<?> logTask;
+    /**
+     * sum of all metrics at the time of the last log, nothing is logged if nothing changed
+     */
+    private static long lastLoggedTotal;
+
+    private Metrics() {
+    }
+
+    @Nonnull
+    public static LongAdder counter(@Nonnull String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    @Nonnull
+    public static Histogram histogram(@Nonnull String name) {
+        return HISTOGRAMS.computeIfAbsent(name, Histogram::new);
+    }
+
+    /**
+     * @return one line per metric, sorted by name; metrics without any values are skipped
+     */
+    @Nonnull
+    public static List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        COUNTERS.forEach((name, counter) -> {
+            long value = counter.sum();
+            if (value != 0)
+                lines.add(name + ": " + value);
+        });
+        HISTOGRAMS.forEach((name, histogram) -> {
+            if (histogram.getCount() != 0)
+                lines.add(histogram.toString());
+        });
+
+        return lines;
+    }
+
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+    }
+
+    /**
+     * Periodically logs the report of all metrics.
+     *
+     * @param minutes the interval in minutes; 0 to disable logging
+     */
+    public static synchronized void setLogInterval(int minutes) {
+        if (logTask != null)
+            logTask.cancel(false);
+        logTask = null;
+
+        if (minutes > 0)
+            logTask = SCHEDULER.scheduleWithFixedDelay(Metrics::logReport, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    private static void logReport() {
+        long total = COUNTERS.values().stream().mapToLong(LongAdder::sum).sum() +
+                     HISTOGRAMS.values().stream().mapToLong(Histogram::getCount).sum();
+        if (total == lastLoggedTotal)
+            return;
+        lastLoggedTotal = total;
+
+        TotalDebug.LOGGER.info("Metrics: {}", String.join(", ", getReport()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.minecraft_ta.totaldebug.companionApp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CodeHighlighterTest {
+
+    private static final String KEYWORD = "\u00a76";
+    private static final String STRING = "\u00a7a";
+    private static final String LITERAL = "\u00a73";
+    private static final String OPERATOR = "\u00a77";
+    private static final String COMMENT = "\u00a78";
+    private static final String RESET = "\u00a7r";
+
+    @Test
+    public void highlightsTokens() {
+        assertEquals(KEYWORD + "int" + RESET + " a " + OPERATOR + "=" + RESET + " " + LITERAL + "0x1F" + RESET + OPERATOR + ";" + RESET,
+                highlight("int a = 0x1F;"));
+        assertEquals("foo" + OPERATOR + "(" + RESET + LITERAL + "1e-5" + RESET + OPERATOR + ")" + RESET,
+                highlight("foo(1e-5)"));
+    }
+
+    @Test
+    public void literalsHideComments() {
+        assertEquals(STRING + "\"// \\\" /*\"" + RESET + " " + COMMENT + "// comment" + RESET,
+                highlight("\"// \\\" /*\" // comment"));
+        assertEquals(LITERAL + "'\"'" + RESET, highlight("'\"'"));
+    }
+
+    @Test
+    public void operatorsStopBeforeComments() {
+        assertEquals("a " + OPERATOR + "=" + RESET + COMMENT + "/* b */" + RESET, highlight("a =/* b */"));
+    }
+
+    @Test
+    public void blockCommentsCarryOver() {
+        StringBuilder out = new StringBuilder();
+        int state = CodeHighlighter.highlightLine("a /* start", CodeHighlighter.STATE_CODE, out);
+        assertNotEquals(CodeHighlighter.STATE_CODE, state);
+        assertEquals("a " + COMMENT + "/* start" + RESET, out.toString());
+
+        out.setLength(0);
+        assertEquals(state, CodeHighlighter.highlightLine("int", state, out));
+        assertEquals(COMMENT + "int" + RESET, out.toString());
+
+        out.setLength(0);
+        assertEquals(CodeHighlighter.STATE_CODE, CodeHighlighter.highlightLine("end */ int", state, out));
+        assertEquals(COMMENT + "end */" + RESET + " " + KEYWORD + "int" + RESET, out.toString());
+    }
+
+    @Test
+    public void textBlocksCarryOver() {
+        int state = CodeHighlighter.highlightLine("s = \"\"\"", CodeHighlighter.STATE_CODE, null);
+        int commentState = CodeHighlighter.highlightLine("/*", CodeHighlighter.STATE_CODE, null);
+        assertNotEquals(CodeHighlighter.STATE_CODE, state);
+        assertNotEquals(commentState, state);
+
+        //comments inside a text block are part of the text
+        assertEquals(state, CodeHighlighter.highlightLine("/* text */", state, null));
+        assertEquals(CodeHighlighter.STATE_CODE, CodeHighlighter.highlightLine("\"\"\";", state, null));
+    }
+
+    @Test
+    public void highlightsWholeCode() {
+        List<String> lines = CodeHighlighter.getHighlightedJavaCode("/**\r\n * doc\r\n */\nclass A {}\n\n");
+        assertEquals(Arrays.asList(
+                COMMENT + "/**" + RESET,
+                COMMENT + " * doc" + RESET,
+                COMMENT + " */" + RESET,
+                KEYWORD + "class" + RESET + " A " + OPERATOR + "{}" + RESET
+        ), lines);
+    }
+
+    @Test
+    public void splitsLinesLikeStringSplit() {
+        assertEquals(Arrays.asList("a", "", "b"), CodeHighlighter.splitLines("a\r\n\nb\n\n"));
+        assertEquals(Arrays.asList(""), CodeHighlighter.splitLines(""));
+        assertEquals(Arrays.asList("a"), CodeHighlighter.splitLines("a\r"));
+    }
+
+    private static String highlight(String line) {
+        StringBuilder out = new StringBuilder();
+        assertEquals(CodeHighlighter.STATE_CODE, CodeHighlighter.highlightLine(line, CodeHighlighter.STATE_CODE, out));
+        return out.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineStorageTest {
+
+    @Test
+    public void splitsLines() {
+        LineStorage storage = new LineStorage("first\r\n\nthird line\n\n\n");
+        assertEquals(3, storage.size());
+        assertEquals("first", storage.get(0));
+        assertEquals("", storage.get(1));
+        assertEquals("third line", storage.get(2));
+        assertEquals(5, storage.getLineLength(0));
+        assertEquals(10, storage.getMaxLineLength());
+    }
+
+    @Test
+    public void emptyCodeHasOneLine() {
+        LineStorage storage = new LineStorage("");
+        assertEquals(1, storage.size());
+        assertEquals("", storage.get(0));
+        assertEquals(0, storage.getMaxLineLength());
+    }
+
+    @Test
+    public void mapsOffsetsToLines() {
+        LineStorage storage = new LineStorage("ab\r\ncd\nef");
+        assertEquals(0, storage.getLineStart(0));
+        assertEquals(4, storage.getLineStart(1));
+        assertEquals(7, storage.getLineStart(2));
+
+        assertEquals(0, storage.getLineOfOffset(0));
+        assertEquals(0, storage.getLineOfOffset(3));
+        assertEquals(1, storage.getLineOfOffset(4));
+        assertEquals(1, storage.getLineOfOffset(6));
+        assertEquals(2, storage.getLineOfOffset(8));
+    }
+}
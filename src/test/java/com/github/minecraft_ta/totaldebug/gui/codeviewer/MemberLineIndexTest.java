@@ -0,0 +1,67 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemberLineIndexTest {
+
+    private static final String CODE = String.join("\n",
+            "package test;",
+            "",
+            "public class Outer",
+            "{",
+            "    private static final int COUNT = 1;",
+            "    private String name, other;",
+            "",
+            "    public void update(int count) {",
+            "        int local = count;",
+            "        update(local);",
+            "    }",
+            "",
+            "    @Override",
+            "    public String toString() {",
+            "        return name;",
+            "    }",
+            "",
+            "    public static class Inner",
+            "    {",
+            "        void update() {",
+            "        }",
+            "    }",
+            "",
+            "    private int updateCount;",
+            "}");
+
+    private final MemberLineIndex index = new MemberLineIndex(new LineStorage(CODE));
+
+    @Test
+    public void findsDeclarations() {
+        assertEquals(2, this.index.find("Outer", -1));
+        assertEquals(4, this.index.find("COUNT", -1));
+        assertEquals(5, this.index.find("name", -1));
+        assertEquals(13, this.index.find("toString", -1));
+        assertEquals(17, this.index.find("inner", -1));
+        assertEquals(23, this.index.find("updateCount", -1));
+    }
+
+    @Test
+    public void skipsMethodBodies() {
+        assertEquals(-1, this.index.find("local", -1));
+        assertEquals(-1, this.index.find("return", -1));
+    }
+
+    @Test
+    public void prefersBetterMatches() {
+        //exact matches first, then members starting with the query, then members containing it
+        assertEquals(7, this.index.find("update", -1));
+        assertEquals(23, this.index.find("updateC", -1));
+        assertEquals(17, this.index.find("nne", -1));
+    }
+
+    @Test
+    public void continuesAfterLineAndWrapsAround() {
+        assertEquals(19, this.index.find("update", 7));
+        assertEquals(7, this.index.find("update", 19));
+    }
+}
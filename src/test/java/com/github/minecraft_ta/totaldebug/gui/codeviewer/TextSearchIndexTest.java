@@ -0,0 +1,60 @@
+package com.github.minecraft_ta.totaldebug.gui.codeviewer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextSearchIndexTest {
+
+    private final TextSearchIndex index = new TextSearchIndex(new LineStorage("Foo foo\r\naaaa\nbar FOO"));
+
+    @Test
+    public void findsHitsIgnoringCase() {
+        TextSearchIndex.Hits hits = this.index.search("FoO", null);
+        assertEquals(3, hits.size());
+        assertEquals(3, hits.getLength());
+        assertEquals(0, hits.getLine(0));
+        assertEquals(0, hits.getColumn(0));
+        assertEquals(0, hits.getLine(1));
+        assertEquals(4, hits.getColumn(1));
+        assertEquals(2, hits.getLine(2));
+        assertEquals(4, hits.getColumn(2));
+    }
+
+    @Test
+    public void emptyQueryHasNoHits() {
+        assertEquals(0, this.index.search("", null).size());
+    }
+
+    @Test
+    public void overlappingMatchesAreNotHits() {
+        TextSearchIndex.Hits hits = this.index.search("aa", null);
+        assertEquals(2, hits.size());
+        assertEquals(0, hits.getColumn(0));
+        assertEquals(2, hits.getColumn(1));
+    }
+
+    @Test
+    public void narrowingKeepsOverlappingMatches() {
+        //"aaa" starts at the second match of "aa", which is not a hit
+        TextSearchIndex.Hits hits = this.index.search("aaa", this.index.search("aa", null));
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.getColumn(0));
+        assertEquals(this.index.search("aaa", null).size(), hits.size());
+
+        hits = this.index.search("foo b", this.index.search("foo", null));
+        assertEquals(0, hits.size());
+        hits = this.index.search("a\nb", this.index.search("a", null));
+        assertEquals(1, hits.size());
+        assertEquals(1, hits.getLine(0));
+    }
+
+    @Test
+    public void findsFirstHitFromLine() {
+        TextSearchIndex.Hits hits = this.index.search("foo", null);
+        assertEquals(0, hits.getFirstHitFromLine(0));
+        assertEquals(2, hits.getFirstHitFromLine(1));
+        assertEquals(2, hits.getFirstHitFromLine(2));
+        assertEquals(3, hits.getFirstHitFromLine(3));
+    }
+}
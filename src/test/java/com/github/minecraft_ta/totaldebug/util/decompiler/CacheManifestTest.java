@@ -0,0 +1,109 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import org.apache.logging.log4j.LogManager;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class CacheManifestTest {
+
+    private static final CacheManifest.Key KEY = new CacheManifest.Key("abc", 1, 2);
+    private static final CacheManifest.Key OTHER_KEY = new CacheManifest.Key("abc", 1, 3);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TotalDebug.LOGGER = LogManager.getLogger("TotalDebug");
+    }
+
+    @Test
+    public void entriesSurviveReload() throws IOException {
+        Path path = this.folder.getRoot().toPath().resolve("manifest.bin");
+        CacheManifest manifest = load(path);
+        manifest.put("A", KEY);
+        manifest.put("B", KEY);
+        manifest.put("B", OTHER_KEY);
+
+        CacheManifest reloaded = load(path);
+        assertTrue(reloaded.isUpToDate("A", KEY));
+        assertFalse(reloaded.isUpToDate("B", KEY));
+        assertTrue(reloaded.isUpToDate("B", OTHER_KEY));
+        assertFalse(reloaded.isUpToDate("C", KEY));
+    }
+
+    @Test
+    public void partialRecordIsCutOff() throws IOException {
+        Path path = this.folder.getRoot().toPath().resolve("manifest.bin");
+        CacheManifest manifest = load(path);
+        manifest.put("A", KEY);
+        manifest.put("B", KEY);
+        long size = Files.size(path);
+
+        //only the first byte of the length of the class name
+        try (OutputStream out = Files.newOutputStream(path, StandardOpenOption.APPEND)) {
+            out.write(0);
+        }
+
+        CacheManifest reloaded = load(path);
+        assertTrue(reloaded.isUpToDate("A", KEY));
+        assertTrue(reloaded.isUpToDate("B", KEY));
+        assertEquals(size, Files.size(path));
+
+        //records appended after the cut are readable again
+        reloaded.put("C", KEY);
+        CacheManifest appended = load(path);
+        assertTrue(appended.isUpToDate("A", KEY));
+        assertTrue(appended.isUpToDate("C", KEY));
+    }
+
+    @Test
+    public void outdatedRecordsAreCompacted() throws IOException {
+        Path path = this.folder.getRoot().toPath().resolve("manifest.bin");
+        CacheManifest manifest = load(path);
+        for (int i = 0; i < 10; i++)
+            manifest.put("A", new CacheManifest.Key("abc", i, 0));
+        long size = Files.size(path);
+
+        CacheManifest reloaded = load(path);
+        assertTrue(reloaded.isUpToDate("A", new CacheManifest.Key("abc", 9, 0)));
+        assertTrue(Files.size(path) < size);
+    }
+
+    @Test
+    public void unknownFormatIsReplaced() throws IOException {
+        Path path = this.folder.getRoot().toPath().resolve("manifest.bin");
+        Files.write(path, "not a manifest".getBytes(StandardCharsets.UTF_8));
+
+        CacheManifest manifest = load(path);
+        assertFalse(manifest.isUpToDate("A", KEY));
+        manifest.put("A", KEY);
+        assertTrue(load(path).isUpToDate("A", KEY));
+    }
+
+    @Test
+    public void hashDependsOnClassBytes() {
+        byte[] bytes = {1, 2, 3};
+        assertEquals(CacheManifest.Key.hash(bytes), CacheManifest.Key.hash(bytes.clone()));
+        assertFalse(CacheManifest.Key.hash(bytes).equals(CacheManifest.Key.hash(new byte[]{1, 2, 4})));
+        assertEquals(40, CacheManifest.Key.hash(bytes).length());
+    }
+
+    private static CacheManifest load(Path path) {
+        CacheManifest manifest = new CacheManifest(path);
+        manifest.load();
+        return manifest;
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import org.apache.logging.log4j.LogManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PackStoreTest {
+
+    private static final long SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private DirectoryStore materializedFiles;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TotalDebug.LOGGER = LogManager.getLogger("TotalDebug");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = this.folder.getRoot().toPath();
+        this.materializedFiles = new DirectoryStore(this.folder.newFolder("files").toPath(), this.folder.newFolder("tmp").toPath());
+    }
+
+    @Test
+    public void filesSurviveReload() throws IOException {
+        PackStore store = load(SEGMENT_SIZE);
+        byte[][] files = new byte[20][];
+        Random random = new Random(0);
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new byte[200];
+            random.nextBytes(files[i]);
+            store.write("File" + i + ".java", files[i]);
+        }
+        store.write("File3.java", bytes("replaced"));
+
+        //incompressible files don't fit into a single segment
+        assertTrue(getSegments().size() > 1);
+
+        PackStore reloaded = load(SEGMENT_SIZE);
+        assertEquals(files.length, reloaded.getFileNames().size());
+        for (int i = 0; i < files.length; i++) {
+            if (i != 3)
+                assertArrayEquals(files[i], reloaded.read("File" + i + ".java"));
+        }
+        assertArrayEquals(bytes("replaced"), reloaded.read("File3.java"));
+        assertNull(reloaded.read("Missing.java"));
+        assertFalse(reloaded.contains("Missing.java"));
+    }
+
+    @Test
+    public void corruptedRecordIsCutOff() throws IOException {
+        PackStore store = load(SEGMENT_SIZE);
+        store.write("A.java", bytes("class A {}"));
+        store.write("B.java", bytes("class B {}"));
+
+        Path segment = getSegments().get(0);
+        byte[] data = Files.readAllBytes(segment);
+        data[data.length - 1] ^= 1;
+        Files.write(segment, data);
+
+        PackStore reloaded = load(SEGMENT_SIZE);
+        assertArrayEquals(bytes("class A {}"), reloaded.read("A.java"));
+        assertFalse(reloaded.contains("B.java"));
+        assertTrue(Files.size(segment) < data.length);
+
+        //records appended after the cut are readable again
+        reloaded.write("C.java", bytes("class C {}"));
+        assertArrayEquals(bytes("class C {}"), load(SEGMENT_SIZE).read("C.java"));
+    }
+
+    @Test
+    public void replacedRecordsAreCompacted() throws IOException {
+        PackStore store = load(3 * 1024 * 1024);
+        store.write("Small.java", bytes("class Small {}"));
+
+        Random random = new Random(0);
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < 10; i++) {
+            random.nextBytes(data);
+            store.write("Large.java", data);
+        }
+
+        //the compaction ran on the calling thread and replaced all segments by a new generation
+        List<Path> segments = getSegments();
+        assertFalse(segments.stream().anyMatch(segment -> segment.getFileName().toString().startsWith("decompiled-0-")));
+        assertTrue(segments.stream().mapToLong(PackStoreTest::size).sum() < 3 * data.length);
+        assertArrayEquals(data, store.read("Large.java"));
+
+        PackStore reloaded = load(3 * 1024 * 1024);
+        assertArrayEquals(bytes("class Small {}"), reloaded.read("Small.java"));
+        assertArrayEquals(data, reloaded.read("Large.java"));
+    }
+
+    @Test
+    public void existingFilesAreImported() throws IOException {
+        this.materializedFiles.write("A.java", bytes("class A {}"));
+
+        PackStore store = load(SEGMENT_SIZE);
+        assertArrayEquals(bytes("class A {}"), store.read("A.java"));
+
+        //written files are only imported once, when the pack is created
+        this.materializedFiles.write("B.java", bytes("class B {}"));
+        assertFalse(load(SEGMENT_SIZE).contains("B.java"));
+    }
+
+    @Test
+    public void incompleteGenerationIsIgnored() throws IOException {
+        PackStore store = load(SEGMENT_SIZE);
+        store.write("A.java", bytes("class A {}"));
+
+        //left over from a compaction which didn't finish, segment 0 is renamed last
+        Path incomplete = this.directory.resolve("decompiled-5-1.pack");
+        Files.write(incomplete, new byte[]{1, 2, 3});
+
+        PackStore reloaded = load(SEGMENT_SIZE);
+        assertArrayEquals(bytes("class A {}"), reloaded.read("A.java"));
+        assertFalse(Files.exists(incomplete));
+    }
+
+    private PackStore load(long maxSegmentSize) throws IOException {
+        PackStore store = new PackStore(this.directory, this.materializedFiles, Runnable::run, maxSegmentSize);
+        store.load();
+        return store;
+    }
+
+    private List<Path> getSegments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".pack")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
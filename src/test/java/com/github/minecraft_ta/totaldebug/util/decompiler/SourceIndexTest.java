@@ -0,0 +1,150 @@
+package com.github.minecraft_ta.totaldebug.util.decompiler;
+
+import com.github.minecraft_ta.totaldebug.TotalDebug;
+import org.apache.logging.log4j.LogManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SourceIndexTest {
+
+    private static final String BLOCK = "class Block {\n    IBlockState getBlockState() {\n        return null;\n    }\n}";
+    private static final String WORLD = "class World {\n    void setBlockState(IBlockState state) {\n        this.state = state;\n    }\n}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+    private DirectoryStore store;
+
+    @BeforeClass
+    public static void setUpLogger() {
+        TotalDebug.LOGGER = LogManager.getLogger("TotalDebug");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.path = this.folder.getRoot().toPath().resolve("index.bin");
+        this.store = new DirectoryStore(this.folder.newFolder("files").toPath(), this.folder.newFolder("tmp").toPath());
+        this.store.write("Block.java", BLOCK.getBytes(StandardCharsets.UTF_8));
+        this.store.write("World.java", WORLD.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void filtersCandidates() throws IOException {
+        SourceIndex index = createIndex();
+
+        //enclosed tokens have to match completely, the first and last token might be part of a longer one
+        assertEquals(Collections.singletonList("Block.java"), index.getCandidates(".getBlockState("));
+        assertEquals(Collections.emptyList(), index.getCandidates(".BlockState("));
+        assertEquals(Arrays.asList("Block.java", "World.java"), sorted(index.getCandidates("BlockState")));
+        //the trigrams of the query have to be in the file
+        assertEquals(Collections.singletonList("World.java"), index.getCandidates("this.sta"));
+        //short queries match every file
+        assertEquals(2, index.getCandidates("xy").size());
+    }
+
+    @Test
+    public void searchFindsLines() throws IOException {
+        SourceIndex index = createIndex();
+
+        List<SourceIndex.Hit> hits = index.search(this.store, "iblockstate", 10);
+        assertEquals(2, hits.size());
+        assertEquals("Block", hits.get(0).getClassName());
+        assertEquals(2, hits.get(0).getLine());
+        assertEquals("IBlockState getBlockState() {", hits.get(0).getText());
+        assertEquals("World", hits.get(1).getClassName());
+
+        assertEquals(1, index.search(this.store, "state", 1).size());
+    }
+
+    @Test
+    public void replacedFilesAreUpdated() throws IOException {
+        SourceIndex index = createIndex();
+        index.update("Block.java", "class Block {}");
+
+        assertEquals(Collections.singletonList("World.java"), index.getCandidates(" setBlockState("));
+        assertEquals(Collections.emptyList(), index.getCandidates(".getBlockState("));
+        assertEquals(Collections.singletonList("Block.java"), index.getCandidates("class Block "));
+    }
+
+    @Test
+    public void indexSurvivesReloadAndCompaction() throws IOException {
+        SourceIndex index = createIndex();
+        for (int i = 0; i < 3; i++)
+            index.update("Block.java", BLOCK);
+        long size = Files.size(this.path);
+
+        SourceIndex reloaded = load(true);
+        assertTrue(Files.size(this.path) < size);
+        assertEquals(Collections.singletonList("Block.java"), reloaded.getCandidates(".getBlockState("));
+        assertEquals(Arrays.asList("Block.java", "World.java"), sorted(reloaded.getCandidates("BlockState")));
+
+        //the compacted index can be appended to
+        reloaded.update("Other.java", "class Other {}");
+        assertEquals(Collections.singletonList("Other.java"), load(true).getCandidates(" Other "));
+    }
+
+    @Test
+    public void partialRecordIsCutOff() throws IOException {
+        createIndex();
+        long size = Files.size(this.path);
+
+        //only the first byte of the length of the file name
+        try (OutputStream out = Files.newOutputStream(this.path, StandardOpenOption.APPEND)) {
+            out.write(0);
+        }
+
+        SourceIndex reloaded = load(true);
+        assertEquals(size, Files.size(this.path));
+        assertEquals(Collections.singletonList("Block.java"), reloaded.getCandidates(".getBlockState("));
+    }
+
+    @Test
+    public void unreadableIndexHasToBeRebuilt() throws IOException {
+        Files.write(this.path, "not an index".getBytes(StandardCharsets.UTF_8));
+
+        SourceIndex index = load(false);
+        assertEquals(Collections.emptyList(), index.getCandidates("BlockState"));
+        index.rebuild(this.store);
+        assertEquals(2, index.getCandidates("BlockState").size());
+    }
+
+    @Test
+    public void onlyCompleteSourcesAreIndexed() {
+        assertTrue(SourceIndex.isIndexed("a.b.Block.java"));
+        assertFalse(SourceIndex.isIndexed("a.b.Block#getBlockState.java"));
+        assertFalse(SourceIndex.isIndexed("a.b.Block.outline"));
+    }
+
+    private SourceIndex createIndex() throws IOException {
+        SourceIndex index = load(false);
+        index.rebuild(this.store);
+        return index;
+    }
+
+    private SourceIndex load(boolean valid) {
+        SourceIndex index = new SourceIndex(this.path);
+        assertEquals(valid, index.load());
+        return index;
+    }
+
+    private static List<String> sorted(List<String> list) {
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.minecraft_ta.totaldebug.util.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        Histogram histogram = new Histogram("test");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals("test: count=0", histogram.toString());
+    }
+
+    @Test
+    public void percentilesUseBucketBounds() {
+        Histogram histogram = new Histogram("test");
+        for (int i = 0; i < 90; i++)
+            histogram.record(80);
+        for (int i = 0; i < 10; i++)
+            histogram.record(4_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.9));
+        //the bucket bound is larger than every recorded value
+        assertEquals(4_000, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void unboundedBucketUsesMaximum() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(10);
+        histogram.record(60_000_000);
+
+        assertEquals(100, histogram.getPercentile(0.5));
+        assertEquals(60_000_000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void resetClearsAllValues() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(1_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        histogram.record(10);
+        assertEquals(10, histogram.getPercentile(1));
+    }
+}